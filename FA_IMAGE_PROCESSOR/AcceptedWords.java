@@ -0,0 +1,157 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class enumerates the words accepted by an automaton along paths that
+ * visit no state twice, which are the transition addresses of the black
+ * blocks of a plain automaton. Words are produced lazily, one per call to
+ * next, by a depth-first search whose stack is kept in primitive arrays, so
+ * neither deep automata nor large images can overflow the call stack, and a
+ * consumer may stop at any time.
+ */
+public final class AcceptedWords implements Iterable<int[]> {
+	private final Automaton automaton;
+	private final int maxLength;
+	private final int[] prefix;
+
+	/**
+	 * Constructs an AcceptedWords enumerating every accepted word.
+	 *
+	 * @param automaton The automaton, whose start state is 0.
+	 */
+	public AcceptedWords(Automaton automaton) {
+		this(automaton, Integer.MAX_VALUE, new int[0]);
+	}
+
+	/**
+	 * Constructs an AcceptedWords enumerating the accepted words that start
+	 * with a prefix and are no longer than a cap.
+	 *
+	 * @param automaton The automaton, whose start state is 0.
+	 * @param maxLength The maximum length of the words.
+	 * @param prefix The symbols every word must start with.
+	 * @throws IllegalArgumentException If the cap is negative.
+	 */
+	public AcceptedWords(Automaton automaton, int maxLength, int[] prefix) {
+		if (maxLength < 0) {
+			throw new IllegalArgumentException("Invalid maximum length " + maxLength);
+		}
+		this.automaton = automaton;
+		this.maxLength = maxLength;
+		this.prefix = prefix.clone();
+	}
+
+	/**
+	 * Returns a new iterator over the accepted words, in depth-first order.
+	 * Each word is returned as a new array of symbols.
+	 *
+	 * @return The iterator.
+	 */
+	@Override
+	public Iterator<int[]> iterator() {
+		return new WordIterator();
+	}
+
+	/**
+	 * Returns a sequential stream of the accepted words.
+	 *
+	 * @return The stream.
+	 */
+	public Stream<int[]> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+				Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * This class is the depth-first search behind the iterator. Level d of
+	 * the stack holds the state reached after d symbols and the index of the
+	 * next transition to try from it.
+	 */
+	private final class WordIterator implements Iterator<int[]> {
+		private final int[] states;
+		private final int[] nextTransitions;
+		private final int[] symbols;
+		private final boolean[] onPath;
+		private int depth;
+		private int[] nextWord;
+
+		/**
+		 * Constructs a WordIterator positioned on the start state.
+		 */
+		WordIterator() {
+			// A path that visits no state twice is shorter than the number of
+			// states
+			int levels = Math.min(maxLength, automaton.getNumberOfStates() - 1) + 1;
+			states = new int[levels];
+			nextTransitions = new int[levels];
+			symbols = new int[levels];
+			onPath = new boolean[automaton.getNumberOfStates()];
+
+			depth = 0;
+			states[0] = 0;
+			nextTransitions[0] = automaton.getTransitionStart(0);
+			onPath[0] = true;
+			if (automaton.isAcceptState(0) && prefix.length == 0) {
+				nextWord = new int[0];
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (nextWord == null) {
+				nextWord = advance();
+			}
+			return nextWord != null;
+		}
+
+		@Override
+		public int[] next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int[] word = nextWord;
+			nextWord = null;
+			return word;
+		}
+
+		/**
+		 * Continues the search up to the next accepted word.
+		 *
+		 * @return The word, or null once the search is over.
+		 */
+		private int[] advance() {
+			while (depth >= 0) {
+				int state = states[depth];
+				if (depth == maxLength
+						|| nextTransitions[depth] == automaton.getTransitionEnd(state)) {
+					// Every transition was tried, so backtrack
+					onPath[state] = false;
+					depth--;
+					continue;
+				}
+
+				int transition = nextTransitions[depth]++;
+				int symbol = automaton.getTransitionSymbol(transition);
+				int target = automaton.getTransitionTarget(transition);
+				if (onPath[target] || (depth < prefix.length && symbol != prefix[depth])) {
+					continue;
+				}
+
+				symbols[depth] = symbol;
+				depth++;
+				states[depth] = target;
+				nextTransitions[depth] = automaton.getTransitionStart(target);
+				onPath[target] = true;
+				if (automaton.isAcceptState(target) && depth >= prefix.length) {
+					return Arrays.copyOf(symbols, depth);
+				}
+			}
+			return null;
+		}
+	}
+}
\ No newline at end of file
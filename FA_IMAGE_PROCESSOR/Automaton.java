@@ -0,0 +1,406 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * This class is an immutable in-memory representation of an automaton text
+ * file. The transitions of each state are stored contiguously in primitive
+ * arrays, so multi-resolution automata with several transitions on the same
+ * symbol are represented as well. Instances may be shared freely between
+ * threads.
+ */
+public final class Automaton {
+	public static final int ALPHABET_SIZE = 4;
+
+	private final int numberOfStates;
+	private final boolean[] acceptStates;
+	private final int[] transitionOffsets;
+	private final int[] transitionSymbols;
+	private final int[] transitionTargets;
+	private final int width;
+	private final int height;
+
+	/**
+	 * Constructs an Automaton from a list of transitions. The transitions are
+	 * grouped by their source state.
+	 *
+	 * @param numberOfStates The number of states.
+	 * @param acceptStates A flag per state telling whether it is accepting.
+	 * @param fromStates The source state of each transition.
+	 * @param toStates The destination state of each transition.
+	 * @param symbols The symbol of each transition.
+	 * @param transitionCount The number of transitions in the arrays.
+	 */
+	Automaton(int numberOfStates, boolean[] acceptStates, int[] fromStates, int[] toStates,
+			int[] symbols, int transitionCount) {
+		this(numberOfStates, acceptStates, fromStates, toStates, symbols, transitionCount, 0, 0);
+	}
+
+	/**
+	 * Constructs an Automaton from a list of transitions, for a kd-tree image
+	 * of the given size when the width and height are positive.
+	 *
+	 * @param numberOfStates The number of states.
+	 * @param acceptStates A flag per state telling whether it is accepting.
+	 * @param fromStates The source state of each transition.
+	 * @param toStates The destination state of each transition.
+	 * @param symbols The symbol of each transition.
+	 * @param transitionCount The number of transitions in the arrays.
+	 * @param width The width of the kd-tree image, or 0 for a quadtree image.
+	 * @param height The height of the kd-tree image, or 0 for a quadtree image.
+	 */
+	Automaton(int numberOfStates, boolean[] acceptStates, int[] fromStates, int[] toStates,
+			int[] symbols, int transitionCount, int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.numberOfStates = numberOfStates;
+		this.acceptStates = Arrays.copyOf(acceptStates, numberOfStates);
+		this.transitionOffsets = new int[numberOfStates + 1];
+		this.transitionSymbols = new int[transitionCount];
+		this.transitionTargets = new int[transitionCount];
+
+		// Counting sort of the transitions by source state
+		for (int i = 0; i < transitionCount; i++) {
+			transitionOffsets[fromStates[i] + 1]++;
+		}
+		for (int state = 0; state < numberOfStates; state++) {
+			transitionOffsets[state + 1] += transitionOffsets[state];
+		}
+		int[] next = Arrays.copyOf(transitionOffsets, numberOfStates);
+		for (int i = 0; i < transitionCount; i++) {
+			int index = next[fromStates[i]]++;
+			transitionSymbols[index] = symbols[i];
+			transitionTargets[index] = toStates[i];
+		}
+	}
+
+	/**
+	 * Reads an automaton from a text file in the format written by
+	 * TransitionAddressesToTextFile.
+	 *
+	 * @param textFile The automaton text file.
+	 * @return The loaded Automaton.
+	 * @throws IOException If the file cannot be read.
+	 * @throws AutomatonFormatException If the file is badly formatted.
+	 */
+	public static Automaton read(File textFile) throws IOException {
+		try (Reader reader = new FileReader(textFile)) {
+			return read(reader);
+		}
+	}
+
+	/**
+	 * Reads an automaton in the text file format: the number of states, the
+	 * accept states, then one "from to symbol" transition per line. A kd-tree
+	 * automaton has its image width and height after the number of states.
+	 *
+	 * @param input The reader to read the automaton from.
+	 * @return The loaded Automaton.
+	 * @throws IOException If the input cannot be read.
+	 * @throws AutomatonFormatException If the input is badly formatted.
+	 */
+	public static Automaton read(Reader input) throws IOException {
+		BufferedReader reader = new BufferedReader(input);
+		try {
+			String line = reader.readLine();
+			if (line == null) {
+				throw new AutomatonFormatException("Invalid automaton formatting");
+			}
+			String[] header = line.trim().split("\\s+");
+			if (header.length != 1 && header.length != 3) {
+				throw new AutomatonFormatException("Invalid automaton formatting");
+			}
+			int numberOfStates = Integer.parseInt(header[0]);
+			int width = header.length == 3 ? Integer.parseInt(header[1]) : 0;
+			int height = header.length == 3 ? Integer.parseInt(header[2]) : 0;
+			if (numberOfStates < 1 || (header.length == 3 && (width < 1 || height < 1))) {
+				throw new AutomatonFormatException("Invalid automaton formatting");
+			}
+			// kd-tree automata only split in two
+			int alphabetSize = width > 0 ? 2 : ALPHABET_SIZE;
+
+			boolean[] acceptStates = new boolean[numberOfStates];
+			line = reader.readLine();
+			if (line == null) {
+				throw new AutomatonFormatException("Invalid automaton formatting");
+			}
+			for (String token : line.trim().split("\\s+")) {
+				if (!token.isEmpty()) {
+					acceptStates[checkState(Integer.parseInt(token), numberOfStates)] = true;
+				}
+			}
+
+			int[] fromStates = new int[16];
+			int[] toStates = new int[16];
+			int[] symbols = new int[16];
+			int count = 0;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				String[] numbers = line.split("\\s+");
+				if (numbers.length != 3) {
+					throw new AutomatonFormatException("Invalid automaton formatting");
+				}
+				if (count == fromStates.length) {
+					fromStates = Arrays.copyOf(fromStates, count * 2);
+					toStates = Arrays.copyOf(toStates, count * 2);
+					symbols = Arrays.copyOf(symbols, count * 2);
+				}
+				fromStates[count] = checkState(Integer.parseInt(numbers[0]), numberOfStates);
+				toStates[count] = checkState(Integer.parseInt(numbers[1]), numberOfStates);
+				symbols[count] = Integer.parseInt(numbers[2]);
+				if (symbols[count] < 0 || symbols[count] >= alphabetSize) {
+					throw new AutomatonFormatException("Invalid transition");
+				}
+				count++;
+			}
+			return new Automaton(numberOfStates, acceptStates, fromStates, toStates, symbols,
+					count, width, height);
+		} catch (NumberFormatException e) {
+			throw new AutomatonFormatException("Invalid automaton formatting", e);
+		}
+	}
+
+	/**
+	 * Writes the automaton in the text file format, with the transitions
+	 * grouped by source state, and the image size after the number of states
+	 * for a kd-tree automaton. The writer is flushed but not closed.
+	 *
+	 * @param output The writer to write the automaton to.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	public void write(Writer output) throws IOException {
+		BufferedWriter writer = new BufferedWriter(output);
+		writer.write(Integer.toString(numberOfStates));
+		if (isKdTree()) {
+			writer.write(" " + width + " " + height);
+		}
+		writer.newLine();
+
+		String separator = "";
+		for (int state = 0; state < numberOfStates; state++) {
+			if (acceptStates[state]) {
+				writer.write(separator + state);
+				separator = " ";
+			}
+		}
+		writer.newLine();
+
+		for (int state = 0; state < numberOfStates; state++) {
+			for (int i = transitionOffsets[state]; i < transitionOffsets[state + 1]; i++) {
+				writer.write(state + " " + transitionTargets[i] + " " + transitionSymbols[i]);
+				writer.newLine();
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Checks that a state number lies within the automaton.
+	 *
+	 * @param state The state number to check.
+	 * @param numberOfStates The number of states of the automaton.
+	 * @return The state number.
+	 * @throws AutomatonFormatException If the state is out of range.
+	 */
+	private static int checkState(int state, int numberOfStates)
+			throws AutomatonFormatException {
+		if (state < 0 || state >= numberOfStates) {
+			throw new AutomatonFormatException("Invalid state " + state);
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the number of states.
+	 *
+	 * @return The number of states.
+	 */
+	public int getNumberOfStates() {
+		return numberOfStates;
+	}
+
+	/**
+	 * Returns whether the automaton describes a kd-tree image, whose words
+	 * split along alternating axes with the symbols 0 and 1.
+	 *
+	 * @return true for a kd-tree automaton, false for a quadtree one.
+	 */
+	public boolean isKdTree() {
+		return width > 0;
+	}
+
+	/**
+	 * Returns the width of a kd-tree image.
+	 *
+	 * @return The width, or 0 for a quadtree automaton.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of a kd-tree image.
+	 *
+	 * @return The height, or 0 for a quadtree automaton.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns whether the given state is an accept state.
+	 *
+	 * @param state The state number.
+	 * @return true if the state is accepting, false otherwise.
+	 */
+	public boolean isAcceptState(int state) {
+		return acceptStates[state];
+	}
+
+	/**
+	 * Returns the index of the first transition leaving the given state.
+	 *
+	 * @param state The state number.
+	 * @return The index of the state's first transition.
+	 */
+	public int getTransitionStart(int state) {
+		return transitionOffsets[state];
+	}
+
+	/**
+	 * Returns the index one past the last transition leaving the given state.
+	 *
+	 * @param state The state number.
+	 * @return The end index of the state's transitions.
+	 */
+	public int getTransitionEnd(int state) {
+		return transitionOffsets[state + 1];
+	}
+
+	/**
+	 * Returns the symbol of the transition at the given index.
+	 *
+	 * @param transition The transition index.
+	 * @return The quadrant symbol of the transition.
+	 */
+	public int getTransitionSymbol(int transition) {
+		return transitionSymbols[transition];
+	}
+
+	/**
+	 * Returns the destination state of the transition at the given index.
+	 *
+	 * @param transition The transition index.
+	 * @return The destination state of the transition.
+	 */
+	public int getTransitionTarget(int transition) {
+		return transitionTargets[transition];
+	}
+
+	/**
+	 * Returns the total number of transitions.
+	 *
+	 * @return The number of transitions.
+	 */
+	public int getTransitionCount() {
+		return transitionSymbols.length;
+	}
+
+	/**
+	 * Returns whether no state has two transitions on the same symbol.
+	 *
+	 * @return true if the automaton is deterministic, false otherwise.
+	 */
+	public boolean isDeterministic() {
+		for (int state = 0; state < numberOfStates; state++) {
+			int seen = 0;
+			for (int i = transitionOffsets[state]; i < transitionOffsets[state + 1]; i++) {
+				int bit = 1 << transitionSymbols[i];
+				if ((seen & bit) != 0) {
+					return false;
+				}
+				seen |= bit;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Orders the states so that every state comes after all states it has a
+	 * transition to, by an iterative depth-first search.
+	 *
+	 * @return The states in reverse topological order, or null if the
+	 * automaton has a cycle.
+	 */
+	public int[] reverseTopologicalOrder() {
+		// 0 unvisited, 1 on the stack, 2 finished
+		byte[] color = new byte[numberOfStates];
+		int[] nextTransition = new int[numberOfStates];
+		int[] stack = new int[numberOfStates];
+		int[] order = new int[numberOfStates];
+		int count = 0;
+
+		for (int start = 0; start < numberOfStates; start++) {
+			if (color[start] != 0) {
+				continue;
+			}
+			int depth = 0;
+			stack[depth++] = start;
+			color[start] = 1;
+			nextTransition[start] = transitionOffsets[start];
+			while (depth > 0) {
+				int state = stack[depth - 1];
+				if (nextTransition[state] == transitionOffsets[state + 1]) {
+					color[state] = 2;
+					order[count++] = state;
+					depth--;
+					continue;
+				}
+				int target = transitionTargets[nextTransition[state]++];
+				if (color[target] == 1) {
+					return null;
+				} else if (color[target] == 0) {
+					color[target] = 1;
+					nextTransition[target] = transitionOffsets[target];
+					stack[depth++] = target;
+				}
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Returns the transitions as a dense table indexed by state * ALPHABET_SIZE
+	 * + symbol, holding the destination state or -1 where there is none.
+	 *
+	 * @return A new dense transition table.
+	 * @throws IllegalStateException If the automaton is a kd-tree automaton,
+	 * whose symbols are not quadrants, or is not deterministic.
+	 */
+	public int[] toTransitionTable() {
+		if (isKdTree()) {
+			throw new IllegalStateException("Kd-tree automata have no quadrant table");
+		}
+		int[] table = new int[numberOfStates * ALPHABET_SIZE];
+		Arrays.fill(table, -1);
+
+		for (int state = 0; state < numberOfStates; state++) {
+			for (int i = transitionOffsets[state]; i < transitionOffsets[state + 1]; i++) {
+				int index = state * ALPHABET_SIZE + transitionSymbols[i];
+				if (table[index] != -1 && table[index] != transitionTargets[i]) {
+					throw new IllegalStateException("Automaton is not deterministic");
+				}
+				table[index] = transitionTargets[i];
+			}
+		}
+		return table;
+	}
+}
\ No newline at end of file
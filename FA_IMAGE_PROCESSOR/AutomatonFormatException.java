@@ -0,0 +1,29 @@
+import java.io.IOException;
+
+/**
+ * This exception is thrown when an automaton text file is badly formatted, for
+ * example when a line cannot be parsed or a transition refers to a state or
+ * symbol that does not exist.
+ */
+public class AutomatonFormatException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs an AutomatonFormatException with the given message.
+	 *
+	 * @param message The detail message.
+	 */
+	public AutomatonFormatException(String message) {
+		super(message);
+	}
+
+	/**
+	 * Constructs an AutomatonFormatException with the given message and cause.
+	 *
+	 * @param message The detail message.
+	 * @param cause The exception that caused the formatting error.
+	 */
+	public AutomatonFormatException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
\ No newline at end of file
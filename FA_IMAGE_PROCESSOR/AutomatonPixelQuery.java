@@ -0,0 +1,166 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * This class answers pixel colour queries directly against a loaded automaton,
+ * without decompressing the whole image. The automaton is held in a dense
+ * transition table, and the colour of a pixel is found by following the
+ * quadrant digits of its coordinates from the start state, which takes one
+ * step per level of the image. The table is never modified after
+ * construction, so one instance can serve any number of threads at once.
+ */
+public final class AutomatonPixelQuery {
+	private final int[] transitionTable;
+	private final boolean[] acceptStates;
+
+	/**
+	 * Constructs an AutomatonPixelQuery over the given automaton.
+	 *
+	 * @param automaton A deterministic automaton, as written by
+	 * TransitionAddressesToTextFile.
+	 * @throws IllegalArgumentException If the automaton is a kd-tree automaton.
+	 * @throws IllegalStateException If the automaton is not deterministic.
+	 */
+	public AutomatonPixelQuery(Automaton automaton) {
+		if (automaton.isKdTree()) {
+			throw new IllegalArgumentException("Not a quadtree automaton");
+		}
+		this.transitionTable = automaton.toTransitionTable();
+		this.acceptStates = new boolean[automaton.getNumberOfStates()];
+		for (int state = 0; state < acceptStates.length; state++) {
+			acceptStates[state] = automaton.isAcceptState(state);
+		}
+	}
+
+	/**
+	 * Loads an automaton text file and prepares it for queries.
+	 *
+	 * @param filePath The path to the automaton text file.
+	 * @return The AutomatonPixelQuery for the file.
+	 * @throws IOException If the file cannot be read or is badly formatted.
+	 */
+	public static AutomatonPixelQuery load(String filePath) throws IOException {
+		return new AutomatonPixelQuery(Automaton.read(new File(filePath)));
+	}
+
+	/**
+	 * Returns whether the pixel at (x, y) is black when the automaton is
+	 * rendered as a resolution x resolution image. A pixel is black if any
+	 * prefix of its address is accepted, that is if it lies inside a black
+	 * quadrant.
+	 *
+	 * @param x The x-coordinate of the pixel, from the left.
+	 * @param y The y-coordinate of the pixel, from the top.
+	 * @param resolution The side length of the image, a power of 2.
+	 * @return true if the pixel is black, false if it is white.
+	 * @throws IllegalArgumentException If the resolution is not a power of 2
+	 * or the pixel lies outside the image.
+	 */
+	public boolean isBlack(int x, int y, int resolution) {
+		checkResolution(resolution);
+		if (x < 0 || y < 0 || x >= resolution || y >= resolution) {
+			throw new IllegalArgumentException(
+					"Pixel (" + x + ", " + y + ") is outside the image");
+		}
+		return lookup(x, y, resolution);
+	}
+
+	/**
+	 * Returns the colour of many pixels of one resolution at once.
+	 *
+	 * @param xs The x-coordinates of the pixels.
+	 * @param ys The y-coordinates of the pixels, in the same order as xs.
+	 * @param resolution The side length of the image, a power of 2.
+	 * @return A flag per pixel telling whether it is black.
+	 * @throws IllegalArgumentException If the arrays differ in length, the
+	 * resolution is not a power of 2 or a pixel lies outside the image.
+	 */
+	public boolean[] isBlack(int[] xs, int[] ys, int resolution) {
+		checkResolution(resolution);
+		if (xs.length != ys.length) {
+			throw new IllegalArgumentException("Coordinate arrays differ in length");
+		}
+
+		boolean[] black = new boolean[xs.length];
+		for (int i = 0; i < xs.length; i++) {
+			if (xs[i] < 0 || ys[i] < 0 || xs[i] >= resolution || ys[i] >= resolution) {
+				throw new IllegalArgumentException(
+						"Pixel (" + xs[i] + ", " + ys[i] + ") is outside the image");
+			}
+			black[i] = lookup(xs[i], ys[i], resolution);
+		}
+		return black;
+	}
+
+	/**
+	 * Returns the colour of every pixel in a rectangular neighbourhood. Parts
+	 * of the rectangle outside the image are reported as white.
+	 *
+	 * @param x The x-coordinate of the top-left corner of the rectangle.
+	 * @param y The y-coordinate of the top-left corner of the rectangle.
+	 * @param width The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 * @param resolution The side length of the image, a power of 2.
+	 * @return A [height][width] array of flags telling whether each pixel is
+	 * black.
+	 * @throws IllegalArgumentException If the resolution is not a power of 2.
+	 */
+	public boolean[][] isBlack(int x, int y, int width, int height, int resolution) {
+		checkResolution(resolution);
+		boolean[][] black = new boolean[height][width];
+
+		for (int j = 0; j < height; j++) {
+			for (int i = 0; i < width; i++) {
+				int pixelX = x + i;
+				int pixelY = y + j;
+				if (pixelX >= 0 && pixelY >= 0 && pixelX < resolution && pixelY < resolution) {
+					black[j][i] = lookup(pixelX, pixelY, resolution);
+				}
+			}
+		}
+		return black;
+	}
+
+	/**
+	 * Follows the quadrant digits of (x, y) from the start state until an
+	 * accept state is reached, a transition is missing or the pixel level is
+	 * passed.
+	 *
+	 * @param x The x-coordinate of the pixel.
+	 * @param y The y-coordinate of the pixel.
+	 * @param resolution The side length of the image.
+	 * @return true if the pixel is black, false otherwise.
+	 */
+	private boolean lookup(int x, int y, int resolution) {
+		int state = 0;
+
+		for (int half = resolution >> 1;; half >>= 1) {
+			if (acceptStates[state]) {
+				return true;
+			}
+			if (half == 0) {
+				return false;
+			}
+
+			// Quadrant digits as used by ImageToTransitionAddresses: 0 bottom
+			// left, 1 top left, 2 bottom right, 3 top right
+			int symbol = ((x & half) != 0 ? 2 : 0) + ((y & half) != 0 ? 0 : 1);
+			state = transitionTable[state * Automaton.ALPHABET_SIZE + symbol];
+			if (state < 0) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Checks that the resolution is a positive power of 2.
+	 *
+	 * @param resolution The side length of the image.
+	 * @throws IllegalArgumentException If it is not.
+	 */
+	private static void checkResolution(int resolution) {
+		if (resolution < 1 || (resolution & (resolution - 1)) != 0) {
+			throw new IllegalArgumentException("Resolution must be a power of 2");
+		}
+	}
+}
\ No newline at end of file
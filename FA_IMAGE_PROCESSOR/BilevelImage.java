@@ -0,0 +1,224 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+
+/**
+ * This class is an immutable black and white image whose side is a power of
+ * 2, the kind of image that Compressor accepts and Decompressor produces. The
+ * pixels are held in a private PackedBitmap, so instances may be shared freely
+ * between threads.
+ */
+public final class BilevelImage {
+	private final PackedBitmap bitmap;
+
+	/**
+	 * Constructs a BilevelImage that takes ownership of a bitmap. The bitmap
+	 * must not be modified afterwards.
+	 *
+	 * @param bitmap The square bitmap whose side is a power of 2.
+	 */
+	BilevelImage(PackedBitmap bitmap) {
+		this.bitmap = bitmap;
+	}
+
+	/**
+	 * Returns a BilevelImage holding the pixels of a BufferedImage.
+	 *
+	 * @param image The image, whose pixels must all be black or white.
+	 * @return The new BilevelImage.
+	 * @throws ImageFormatException If the image is not square with a side that
+	 * is a power of 2, or has a pixel that is neither black nor white.
+	 */
+	public static BilevelImage of(BufferedImage image) throws ImageFormatException {
+		checkSize(image.getWidth(), image.getHeight());
+		PixelScanner.Result scan = PixelScanner.getInstance().scan(image);
+		if (!scan.isBlackAndWhite()) {
+			throw new ImageFormatException("Image is not black and white");
+		}
+		return new BilevelImage(scan.getBitmap());
+	}
+
+	/**
+	 * Returns a BilevelImage holding the pixels of a PackedBitmap. Read-only
+	 * bitmaps, such as memory-mapped PBM and raw files, are wrapped without
+	 * copying; any other bitmap is copied, as its owner could still change it.
+	 *
+	 * @param bitmap The bitmap.
+	 * @return The new BilevelImage.
+	 * @throws ImageFormatException If the bitmap is not square with a side that
+	 * is a power of 2.
+	 */
+	public static BilevelImage of(PackedBitmap bitmap) throws ImageFormatException {
+		checkSize(bitmap.getWidth(), bitmap.getHeight());
+		return new BilevelImage(bitmap.isReadOnly() ? bitmap : copyOf(bitmap));
+	}
+
+	/**
+	 * Reads an image file: PBM or raw bitmaps by their extension, and any
+	 * format ImageIO can decode otherwise.
+	 *
+	 * @param path The image file.
+	 * @return The image.
+	 * @throws IOException If the file cannot be read.
+	 * @throws ImageFormatException If the file does not hold a valid image.
+	 */
+	public static BilevelImage read(Path path) throws IOException {
+		File file = path.toFile();
+		if (BitmapCodec.isBitmapFile(file.getPath())) {
+			return of(BitmapCodec.read(file));
+		}
+		BufferedImage image = ImageIO.read(file);
+		if (image == null) {
+			throw new ImageFormatException("Unsupported image format");
+		}
+		return of(image);
+	}
+
+	/**
+	 * Reads an image in any format ImageIO can decode, such as PNG. The
+	 * stream is not closed.
+	 *
+	 * @param input The stream to read the image from.
+	 * @return The image.
+	 * @throws IOException If the stream cannot be read.
+	 * @throws ImageFormatException If the stream does not hold a valid image.
+	 */
+	public static BilevelImage read(InputStream input) throws IOException {
+		BufferedImage image = ImageIO.read(input);
+		if (image == null) {
+			throw new ImageFormatException("Unsupported image format");
+		}
+		return of(image);
+	}
+
+	/**
+	 * Returns the side of the image.
+	 *
+	 * @return The width and height of the image.
+	 */
+	public int getSize() {
+		return bitmap.getWidth();
+	}
+
+	/**
+	 * Returns whether a pixel is black.
+	 *
+	 * @param x The x-coordinate of the pixel.
+	 * @param y The y-coordinate of the pixel.
+	 * @return true if the pixel is black, false otherwise.
+	 */
+	public boolean isBlack(int x, int y) {
+		return bitmap.isBlack(x, y);
+	}
+
+	/**
+	 * Returns the pixels as a PackedBitmap, which is shared when it is
+	 * read-only and a copy otherwise.
+	 *
+	 * @return A PackedBitmap the caller cannot change this image through.
+	 */
+	public PackedBitmap toPackedBitmap() {
+		return bitmap.isReadOnly() ? bitmap : copyOf(bitmap);
+	}
+
+	/**
+	 * Returns a copy of the pixels as a 1-bit BufferedImage.
+	 *
+	 * @return A new BufferedImage of type TYPE_BYTE_BINARY.
+	 */
+	public BufferedImage toBufferedImage() {
+		return toBufferedImage(bitmap);
+	}
+
+	/**
+	 * Returns a copy of the pixels of a bitmap of any size as a 1-bit
+	 * BufferedImage.
+	 *
+	 * @param bitmap The bitmap to copy.
+	 * @return A new BufferedImage of type TYPE_BYTE_BINARY.
+	 */
+	static BufferedImage toBufferedImage(PackedBitmap bitmap) {
+		BufferedImage image = new BufferedImage(bitmap.getWidth(), bitmap.getHeight(),
+				BufferedImage.TYPE_BYTE_BINARY);
+
+		// TYPE_BYTE_BINARY packs rows like PBM, but with a set bit meaning white
+		byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		bitmap.getBits().get(data, 0, data.length);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) ~data[i];
+		}
+		return image;
+	}
+
+	/**
+	 * Writes the image to a file, as PBM or raw bits when the extension is
+	 * .pbm or .raw and as PNG otherwise.
+	 *
+	 * @param path The file to write.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void write(Path path) throws IOException {
+		File file = path.toFile();
+		if (BitmapCodec.isBitmapFile(file.getPath())) {
+			BitmapCodec.write(bitmap, file);
+		} else if (!ImageIO.write(toBufferedImage(), "png", file)) {
+			throw new IOException("Error writing image to file");
+		}
+	}
+
+	/**
+	 * Writes the image to a stream as PNG. The stream is not closed.
+	 *
+	 * @param output The stream to write the image to.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	public void write(OutputStream output) throws IOException {
+		if (!ImageIO.write(toBufferedImage(), "png", output)) {
+			throw new IOException("Error writing image to stream");
+		}
+	}
+
+	/**
+	 * Returns the bitmap backing this image, which callers must not modify.
+	 *
+	 * @return The backing bitmap.
+	 */
+	PackedBitmap getPackedBitmap() {
+		return bitmap;
+	}
+
+	/**
+	 * Checks that an image is square with a side that is a power of 2.
+	 *
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @return The side of the image.
+	 * @throws ImageFormatException If the size is invalid.
+	 */
+	private static int checkSize(int width, int height) throws ImageFormatException {
+		if (width != height || width < 1 || (height & (height - 1)) != 0) {
+			throw new ImageFormatException("Image is not square with a power of 2 side");
+		}
+		return height;
+	}
+
+	/**
+	 * Copies the packed rows of a bitmap into a new heap bitmap.
+	 *
+	 * @param bitmap The bitmap to copy.
+	 * @return The copy.
+	 */
+	private static PackedBitmap copyOf(PackedBitmap bitmap) {
+		ByteBuffer bits = bitmap.getBits();
+		ByteBuffer copy = ByteBuffer.allocate(bits.remaining());
+		copy.put(bits);
+		copy.flip();
+		return new PackedBitmap(bitmap.getWidth(), bitmap.getHeight(), copy);
+	}
+}
\ No newline at end of file
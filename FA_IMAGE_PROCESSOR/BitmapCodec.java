@@ -0,0 +1,177 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads and writes 1-bit black and white images in two formats:
+ * binary PBM (P4), and raw packed bits without a header for square images
+ * whose side is a power of 2, the side being derived from the file length.
+ * Both use the PackedBitmap row layout, so files are memory-mapped on input
+ * and packed rows are written straight out on output.
+ */
+public class BitmapCodec {
+
+	/**
+	 * Returns whether a file path names a PBM or raw bitmap.
+	 *
+	 * @param filePath The file path.
+	 * @return true if the path ends with .pbm or .raw, false otherwise.
+	 */
+	public static boolean isBitmapFile(String filePath) {
+		String lowerCase = filePath.toLowerCase();
+		return lowerCase.endsWith(".pbm") || lowerCase.endsWith(".raw");
+	}
+
+	/**
+	 * Returns the extension of decompressed images, selected with the
+	 * fa.output.format system property: png (the default), pbm or raw.
+	 *
+	 * @return The extension, including the dot.
+	 */
+	public static String decompressedExtension() {
+		String format = System.getProperty("fa.output.format", "png").toLowerCase();
+		if (format.equals("pbm") || format.equals("raw")) {
+			return "." + format;
+		}
+		return ".png";
+	}
+
+	/**
+	 * Memory-maps a PBM or raw bitmap file, depending on its extension.
+	 *
+	 * @param file The bitmap file.
+	 * @return The mapped image.
+	 * @throws IOException If the file cannot be read or is badly formatted.
+	 */
+	public static PackedBitmap read(File file) throws IOException {
+		MappedByteBuffer data;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (file.getName().toLowerCase().endsWith(".raw")) {
+			return readRaw(data);
+		}
+		return readPbm(data);
+	}
+
+	/**
+	 * Writes an image as binary PBM or as raw packed bits.
+	 *
+	 * @param bitmap The image to write.
+	 * @param file The file to write, whose extension selects the format.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void write(PackedBitmap bitmap, File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			if (!file.getName().toLowerCase().endsWith(".raw")) {
+				String header = "P4\n" + bitmap.getWidth() + " " + bitmap.getHeight() + "\n";
+				writeFully(channel, ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+			}
+			writeFully(channel, bitmap.getBits());
+		}
+	}
+
+	/**
+	 * Parses the header of a binary PBM file and wraps its pixel data.
+	 *
+	 * @param data The whole file.
+	 * @return The image.
+	 * @throws IOException If the file is not a binary PBM file.
+	 */
+	private static PackedBitmap readPbm(ByteBuffer data) throws IOException {
+		if (data.remaining() < 2 || data.get() != 'P' || data.get() != '4') {
+			throw new IOException("Invalid PBM file");
+		}
+		int width = readHeaderNumber(data);
+		int height = readHeaderNumber(data);
+
+		// Exactly one whitespace character separates the header from the data
+		if (!data.hasRemaining() || !Character.isWhitespace(data.get())) {
+			throw new IOException("Invalid PBM file");
+		}
+		try {
+			return new PackedBitmap(width, height, data);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid PBM file", e);
+		}
+	}
+
+	/**
+	 * Wraps a raw bitmap, deriving its side from the data length.
+	 *
+	 * @param data The whole file.
+	 * @return The image.
+	 * @throws IOException If the length does not match a square image whose
+	 * side is a power of 2.
+	 */
+	private static PackedBitmap readRaw(ByteBuffer data) throws IOException {
+		long length = data.remaining();
+		for (int side = 1; side > 0 && (long) side * ((side + 7) / 8) <= length; side <<= 1) {
+			if ((long) side * ((side + 7) / 8) == length) {
+				return new PackedBitmap(side, side, data);
+			}
+		}
+		throw new IOException("Invalid raw bitmap length");
+	}
+
+	/**
+	 * Reads a decimal number from a PBM header, skipping whitespace and
+	 * comments before it.
+	 *
+	 * @param data The file, positioned inside the header.
+	 * @return The number.
+	 * @throws IOException If no number follows.
+	 */
+	private static int readHeaderNumber(ByteBuffer data) throws IOException {
+		int c = -1;
+		while (data.hasRemaining()) {
+			c = data.get();
+			if (c == '#') {
+				while (data.hasRemaining() && c != '\n' && c != '\r') {
+					c = data.get();
+				}
+			} else if (!Character.isWhitespace(c)) {
+				break;
+			}
+		}
+		if (c < '0' || c > '9') {
+			throw new IOException("Invalid PBM file");
+		}
+
+		long number = 0;
+		while (c >= '0' && c <= '9') {
+			number = number * 10 + (c - '0');
+			if (number > Integer.MAX_VALUE) {
+				throw new IOException("Invalid PBM file");
+			}
+			if (!data.hasRemaining()) {
+				break;
+			}
+			data.mark();
+			c = data.get();
+		}
+		if (c < '0' || c > '9') {
+			data.reset();
+		}
+		return (int) number;
+	}
+
+	/**
+	 * Writes the whole buffer to a channel.
+	 *
+	 * @param channel The channel to write to.
+	 * @param buffer The bytes to write.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
\ No newline at end of file
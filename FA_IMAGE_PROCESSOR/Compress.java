@@ -1,10 +1,15 @@
-import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import javax.imageio.ImageIO;
+import java.util.UUID;
 
 /**
  * This class provides compression and decompression functionality for images
@@ -18,59 +23,254 @@ public class Compress {
 	 *
 	 * @param args Command line arguments for specifying the operation mode,
 	 * options, and input file.
+	 */
+	public static void main(String[] args) {
+		try {
+			run(args, System.out);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(0);
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * Runs one compression or decompression job, writing its result to the
+	 * out directory of the current working directory.
+	 *
+	 * @param args Command line arguments for specifying the operation mode,
+	 * options, and input file.
+	 * @param out The stream job messages, such as the lossy error rate, are
+	 * printed to.
+	 * @return The path of the output file.
+	 * @throws IllegalArgumentException If the arguments or the input file are
+	 * invalid.
 	 * @throws IOException If an error occurs while reading or writing files.
 	 */
-	public static void main(String[] args) throws IOException {
+	public static String run(String[] args, PrintStream out) throws IOException {
+		return run(args, out, Paths.get(""));
+	}
+
+	/**
+	 * Runs one compression or decompression job. Unlike main, errors are
+	 * reported as exceptions, so jobs can be run from a long-lived process such
+	 * as CompressDaemon. The result is written to a temporary file that is
+	 * renamed into place, so concurrent jobs on the same input never leave a
+	 * mix of their outputs behind.
+	 *
+	 * @param args Command line arguments for specifying the operation mode,
+	 * options, and input file.
+	 * @param out The stream job messages, such as the lossy error rate, are
+	 * printed to.
+	 * @param workingDirectory The directory whose out directory the result is
+	 * written to.
+	 * @return The path of the output file.
+	 * @throws IllegalArgumentException If the arguments or the input file are
+	 * invalid.
+	 * @throws IOException If an error occurs while reading or writing files.
+	 */
+	public static String run(String[] args, PrintStream out, Path workingDirectory)
+			throws IOException {
 		validateArguments(args);
 		String inputFilePath = args[args.length - 1];
+		String outputFilePath = workingDirectory
+				.resolve(outputFilePath(inputFilePath, Integer.parseInt(args[1]))).toString();
+
+		// Results shown in the GUI are never written, so they are not cached.
+		// Nor are lossy results, whose error rate is measured against the
+		// source image and must be printed for every job
+		ResultCache cache = Integer.parseInt(args[0]) == 0 && !args[2].equalsIgnoreCase("l")
+				? ResultCache.fromSystemProperties()
+				: null;
+		String cacheKey = null;
+		if (cache != null) {
+			cacheKey = cache.keyFor(inputFilePath, args);
+			if (cache.fetch(cacheKey, outputFilePath)) {
+				return outputFilePath;
+			}
+		}
+		// A cached result was produced from a valid input with the same
+		// bytes, so the input only needs checking on a miss
+		validateInput(args);
 
-		if (Integer.parseInt(args[1]) == 1) {// Decompression
+		if (Integer.parseInt(args[1]) == 1 && Integer.parseInt(args[0]) == 1) {// GUI
 
 			TextFileToTransitionAddresses transitionAddresses = new TextFileToTransitionAddresses(
 					args);
 			new TransitionAddressesToImage(transitionAddresses.getTransitionAddresses(),
-					inputFilePath, Integer.parseInt(args[0]));
+					inputFilePath, 1);
+			return outputFilePath;
+		}
+
+		Path output = Paths.get(outputFilePath);
+		Path temp = temporaryFileFor(output);
+		try {
+			if (Integer.parseInt(args[1]) == 1) {
+				decompress(args, Paths.get(inputFilePath), temp);
+			} else {
+				// The compressors reject images that are not black and white,
+				// or not square with a power of 2 side where that is required
+				try {
+					compress(args, Paths.get(inputFilePath), temp, out);
+				} catch (ImageFormatException e) {
+					throw new IllegalArgumentException("Compress Error - Invalid input image");
+				}
+			}
+			Files.move(temp, output, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+
+		if (cache != null) {
+			cache.store(cacheKey, outputFilePath);
+		}
+		return outputFilePath;
+	}
+
+	/**
+	 * Runs one decompression job whose arguments have been validated.
+	 *
+	 * @param args Command line arguments for specifying the operation mode,
+	 * options, and input file.
+	 * @param input The automaton text file.
+	 * @param output The image file to write.
+	 * @throws IOException If an error occurs while reading or writing files.
+	 */
+	private static void decompress(String[] args, Path input, Path output) throws IOException {
+		if (args[2].equalsIgnoreCase("b")) {// kd-tree decompression
+
+			KdTreeCodec.decompress(input, output);
+		} else {// Decompression
+
+			Decompressor decompressor = args[2].equalsIgnoreCase("t")
+					? new Decompressor(Integer.parseInt(args[3]))
+					: new Decompressor();
+			decompressor.decompress(input, output);
+		}
+	}
+
+	/**
+	 * Runs one compression job whose arguments have been validated.
+	 *
+	 * @param args Command line arguments for specifying the operation mode,
+	 * options, and input file.
+	 * @param input The image file.
+	 * @param output The automaton text file to write.
+	 * @param out The stream the lossy error rate is printed to.
+	 * @throws ImageFormatException If the input is not a valid image.
+	 * @throws IOException If an error occurs while reading or writing files.
+	 */
+	private static void compress(String[] args, Path input, Path output, PrintStream out)
+			throws IOException {
+		if (args[2].equalsIgnoreCase("l")) {// Lossy compression
+
+			LossyCompressor compressor = new LossyCompressor(Double.parseDouble(args[3]),
+					Double.parseDouble(args[4]));
+			compressor.compress(BilevelImage.read(input).getPackedBitmap());
+			try (Writer writer = Files.newBufferedWriter(output)) {
+				compressor.writeAutomaton(writer);
+			}
+			out.printf("Error rate: %.4f%%%n", compressor.getErrorRate() * 100);
+		} else if (args[2].equalsIgnoreCase("b")) {// kd-tree compression
+
+			KdTreeCodec.compress(input, output);
 		} else {// Compression
 
-			BufferedImage image = ImageIO.read(new File(inputFilePath));
-			ImageToTransitionAddresses transitionAddresses = new ImageToTransitionAddresses(image,
-					args);
-			new TransitionAddressesToTextFile(transitionAddresses.getTransitionAddresses(),
-					inputFilePath, args);
+			Compressor compressor = args[2].equalsIgnoreCase("t")
+					? new Compressor(Integer.parseInt(args[3]))
+					: new Compressor();
+			compressor.compress(input, output);
 		}
 	}
 
+	/**
+	 * Returns an unused temporary path next to an output file. The file is not
+	 * created, so the writer creates it with the usual permissions rather
+	 * than those of Files.createTempFile. The path keeps the output's
+	 * extension, which selects the image format written to it.
+	 *
+	 * @param output The output file.
+	 * @return The temporary path.
+	 * @throws IOException If the output's directory cannot be created.
+	 */
+	private static Path temporaryFileFor(Path output) throws IOException {
+		Path directory = output.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		String name = output.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		String unique = "-" + UUID.randomUUID();
+		return directory.resolve(dot < 0 ? name + unique + ".tmp"
+				: name.substring(0, dot) + unique + name.substring(dot));
+	}
+
+	/**
+	 * Returns the path of the file a job writes its result to, following the
+	 * naming of the command line tool.
+	 *
+	 * @param inputFilePath The path to the input file.
+	 * @param mode The operation mode, 1 for decompression and 2 for
+	 * compression.
+	 * @return The path of the output file.
+	 */
+	static String outputFilePath(String inputFilePath, int mode) {
+		if (inputFilePath.contains("/")) {
+			inputFilePath = inputFilePath.substring(inputFilePath.lastIndexOf("/"));
+		}
+		if (mode == 1) {
+			return "out/"
+					+ inputFilePath.replace(".txt", "_dec" + BitmapCodec.decompressedExtension());
+		}
+		return "out/" + inputFilePath.replace(".png", "_cmp.txt").replaceAll("\\.(pbm|raw)$",
+				"_cmp.txt");
+	}
+
 	/**
 	 * Validates the input arguments for the program. This method checks the
 	 * input arguments for various conditions, such as the correct number of
 	 * arguments, valid file paths, valid GUI arguments, mode, word length, and
-	 * others. It also checks if the input image meets the required conditions
-	 * for compression. If the input arguments do not meet the requirements, an
-	 * error message is displayed, and the program exits.
+	 * others. The contents of the input file are checked by validateInput. If
+	 * the input arguments do not meet the requirements, an exception carrying
+	 * the error message is thrown.
 	 *
 	 * @param args An array of Strings containing the command line arguments.
+	 * @throws IllegalArgumentException If the arguments are invalid.
 	 */
 	private static void validateArguments(String[] args) {
 		int wordLength = 1;
 		String flag = " ";
 
 		flag = args[2];
-		if (flag.equalsIgnoreCase("f")) {
+		boolean kdTree = flag.equalsIgnoreCase("b");
+		if (flag.equalsIgnoreCase("f") || kdTree) {
 			if (args.length != 4) {
-				System.err.println("Input Error - Invalid number of arguments");
-				System.exit(0);
+				throw new IllegalArgumentException("Input Error - Invalid number of arguments");
+			}
+		} else if (flag.equalsIgnoreCase("l")) {
+			if (args.length != 6) {
+				throw new IllegalArgumentException("Input Error - Invalid number of arguments");
+			}
+			try {
+				double blackRatio = Double.parseDouble(args[3]);
+				double hammingBudget = Double.parseDouble(args[4]);
+				if (!(blackRatio >= 0.5 && blackRatio <= 1)
+						|| !(hammingBudget >= 0 && hammingBudget <= 1)) {
+					throw new IllegalArgumentException("Compress Error - Invalid lossy parameters");
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Input Error - Invalid argument type");
 			}
 		} else {
 			if (args.length != 5) {
-				System.err.println("Input Error - Invalid number of arguments");
-				System.exit(0);
+				throw new IllegalArgumentException("Input Error - Invalid number of arguments");
 			}
 			try {
 				flag = args[2];
 				wordLength = Integer.parseInt(args[3]);
 			} catch (NumberFormatException e) {
-				System.err.println("Input Error - Invalid argument type");
-				System.exit(0);
+				throw new IllegalArgumentException("Input Error - Invalid argument type");
 			}
 		}
 
@@ -80,135 +280,124 @@ public class Compress {
 			int mode = Integer.parseInt(args[1]);
 
 			if (gui < 0 || gui > 1) {
-				System.err.println("Input Error - Invalid GUI argument");
-				System.exit(0);
+				throw new IllegalArgumentException("Input Error - Invalid GUI argument");
 			}
 
 			if (mode < 1 || mode > 2) {
-				System.err.println("Input Error - Invalid mode");
-				System.exit(0);
+				throw new IllegalArgumentException("Input Error - Invalid mode");
 			}
 
-			if (!flag.matches("[FfTt]")) {
-				System.err.println("Input Error - Invalid multi-resolution flag");
-				System.exit(0);
+			if (!flag.matches("[FfTtLlBb]")) {
+				throw new IllegalArgumentException("Input Error - Invalid multi-resolution flag");
+			}
+
+			if (flag.equalsIgnoreCase("l") && mode != 2) {
+				throw new IllegalArgumentException("Input Error - Invalid mode");
+			}
+
+			// The GUI only shows square images
+			if (kdTree && gui == 1) {
+				throw new IllegalArgumentException("Input Error - Invalid GUI argument");
 			}
 
 			File file = new File(filePath);
 			if (!file.exists() || !file.isFile()) {
-				System.err.println("Input Error - Invalid or missing file");
-				System.exit(0);
+				throw new IllegalArgumentException("Input Error - Invalid or missing file");
 			}
 
-			if (mode == 1) {// DECOMPRESSION ERRORS
+			// Compression accepts word lengths of at most 5
+			if (wordLength < 0 || (mode == 2 && wordLength > 5)) {
+				throw new IllegalArgumentException("Decompress Error - Invalid word length");
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Input Error - Invalid argument type");
+		}
+	}
 
-				if (wordLength < 0) {
-					System.err.println("Decompress Error - Invalid word length");
-					System.exit(0);
-				}
+	/**
+	 * Validates the contents of the input file of a job whose arguments have
+	 * passed validateArguments, which is the formatting of an automaton text
+	 * file to decompress. This reads the whole file, so it is only done when
+	 * the result is not cached. Images to compress are checked by the
+	 * compressors while they are decoded, so they are read only once.
+	 *
+	 * @param args An array of Strings containing the command line arguments.
+	 * @throws IllegalArgumentException If the input file is invalid.
+	 */
+	private static void validateInput(String[] args) {
+		String filePath = args[args.length - 1];
+		int mode = Integer.parseInt(args[1]);
+		boolean kdTree = args[2].equalsIgnoreCase("b");
 
-				String acceptStates = "";
-				String numOfStates = "";
-				String line = "";
-				ArrayList<String> transitions = new ArrayList<>();
-
-				try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-					// Check the first line
-					numOfStates = reader.readLine();
-					if (numOfStates == null || !numOfStates.matches("^\\d+$")) {
-						System.err.println("Decompress Error - Invalid automaton formatting");
-						System.exit(0);
-					}
-					// Check the second line
-					acceptStates = reader.readLine();
-					acceptStates = acceptStates.trim();
-					if (acceptStates == null || !acceptStates.matches("^\\d+(\\s+\\d+)*$")) {
-						System.err.println("Decompress Error - Invalid automaton formatting");
-						System.exit(0);
-					}
-					// Check the remaining lines
-					while ((line = reader.readLine()) != null) {
-						line = line.trim();
-						transitions.add(line);
-						if (!line.matches("^\\d+\\s+\\d+\\s+\\d+$")) {
-							System.err.println("Decompress Error - Invalid automaton formatting");
-							System.exit(0);
-						}
-					}
+		if (mode == 1) {// DECOMPRESSION ERRORS
 
-				} catch (Exception e) {
-					System.err.println("Decompress Error - Invalid automaton formatting");
-					System.exit(0);
-				}
+			String acceptStates = "";
+			String numOfStates = "";
+			String line = "";
+			ArrayList<String> transitions = new ArrayList<>();
 
-				String[] listOfAcceptStates = acceptStates.split(" ");
-				for (String numberStr : listOfAcceptStates) {
-					int number = Integer.parseInt(numberStr);
-					if (number < 1 || number > Integer.parseInt(numOfStates)) {
-						System.err.println("Decompress Error - Invalid accept state");
-						System.exit(0);
+			try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+				// Check the first line
+				numOfStates = reader.readLine();
+				if (numOfStates == null || !numOfStates
+						.matches(kdTree ? "^[1-9]\\d*\\s+[1-9]\\d*\\s+[1-9]\\d*$" : "^\\d+$")) {
+					throw new IllegalArgumentException(
+							"Decompress Error - Invalid automaton formatting");
+				}
+				// kd-tree automata have the image size after the number of states
+				numOfStates = numOfStates.trim().split("\\s+")[0];
+				// Check the second line
+				// An automaton without accept states is an entirely white image
+				acceptStates = reader.readLine();
+				if (acceptStates == null
+						|| !acceptStates.trim().matches("^(\\d+(\\s+\\d+)*)?$")) {
+					throw new IllegalArgumentException(
+							"Decompress Error - Invalid automaton formatting");
+				}
+				// Check the remaining lines
+				while ((line = reader.readLine()) != null) {
+					line = line.trim();
+					transitions.add(line);
+					if (!line.matches("^\\d+\\s+\\d+\\s+\\d+$")) {
+						throw new IllegalArgumentException(
+								"Decompress Error - Invalid automaton formatting");
 					}
 				}
 
-				for (String transition : transitions) {
-					if (transition != null) {
-						String[] numbers = transition.split(" ");
-
-						int num1 = Integer.parseInt(numbers[0]);
-						int num2 = Integer.parseInt(numbers[1]);
-						int num3 = Integer.parseInt(numbers[2]);
-						if (num1 < 0 || num1 > Integer.parseInt(numOfStates) - 1 || num2 < 0
-								|| num2 > Integer.parseInt(numOfStates) - 1) {
-							System.err.println("Decompress Error - Invalid transition");
-							System.exit(0);
-						}
-
-						if (num3 < 0 || num3 > 3) {
-							System.err.println("Decompress Error - Invalid transition");
-							System.exit(0);
-						}
-					}
+			} catch (Exception e) {
+				throw new IllegalArgumentException(
+						"Decompress Error - Invalid automaton formatting");
+			}
+
+			String[] listOfAcceptStates = acceptStates.trim().isEmpty() ? new String[0]
+					: acceptStates.trim().split("\\s+");
+			for (String numberStr : listOfAcceptStates) {
+				int number = Integer.parseInt(numberStr);
+				if (number < 0 || number > Integer.parseInt(numOfStates) - 1) {
+					throw new IllegalArgumentException(
+							"Decompress Error - Invalid accept state");
 				}
+			}
 
-			} else {// Compression validation
-				try {
-					BufferedImage image = ImageIO.read(new File(filePath));
-					if (image == null) {
-						System.err.println("Input Error - Invalid or missing file");
-						System.exit(0);
-					}
-					int width = image.getWidth();
-					int height = image.getHeight();
-
-					// Check if width and height are equal and height is a power
-					// of 2
-					if (width != height || (height & (height - 1)) != 0) {
-						System.err.println("Compress Error - Invalid input image");
-						System.exit(0);
-					}
+			for (String transition : transitions) {
+				if (transition != null) {
+					String[] numbers = transition.split(" ");
 
-					for (int y = 0; y < height; y++) {
-						for (int x = 0; x < width; x++) {
-							int color = image.getRGB(x, y) & 0xFFFFFF;
-							if (color != 0 && color != 0xFFFFFF) {
-								System.err.println("Compress Error - Invalid input image");
-								System.exit(0);
-							}
-						}
+					int num1 = Integer.parseInt(numbers[0]);
+					int num2 = Integer.parseInt(numbers[1]);
+					int num3 = Integer.parseInt(numbers[2]);
+					if (num1 < 0 || num1 > Integer.parseInt(numOfStates) - 1 || num2 < 0
+							|| num2 > Integer.parseInt(numOfStates) - 1) {
+						throw new IllegalArgumentException(
+								"Decompress Error - Invalid transition");
 					}
-				} catch (IOException e) {
-					System.err.println("Input Error - Invalid or missing file");
-					System.exit(0);
-				}
 
-				if (wordLength < 0 || wordLength > 3) {
-					System.err.println("Decompress Error - Invalid word length");
-					System.exit(0);
+					if (num3 < 0 || num3 > (kdTree ? 1 : 3)) {
+						throw new IllegalArgumentException(
+								"Decompress Error - Invalid transition");
+					}
 				}
 			}
-		} catch (NumberFormatException e) {
-			System.err.println("Input Error - Invalid argument type");
-			System.exit(0);
 		}
 	}
 }
\ No newline at end of file
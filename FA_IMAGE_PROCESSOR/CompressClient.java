@@ -0,0 +1,71 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * This class is a thin client for CompressDaemon. It takes the same arguments
+ * as Compress.main, preceded by the daemon's endpoint, and sends the job to
+ * the daemon instead of running it in its own JVM. The result is written to
+ * the out directory of the client's working directory, and its path is
+ * printed once the job is done.
+ */
+public class CompressClient {
+
+	/**
+	 * The main entry point of the client.
+	 *
+	 * @param args The daemon's endpoint (a loopback port or a Unix domain
+	 * socket path) followed by the arguments of Compress.main.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Input Error - Invalid number of arguments");
+			System.exit(0);
+		}
+
+		// The daemon may run in another directory, so the working directory
+		// is sent for it to resolve the input and output paths against
+		StringBuilder request = new StringBuilder(Paths.get("").toAbsolutePath().toString());
+		for (int i = 1; i < args.length; i++) {
+			request.append('\t').append(args[i]);
+		}
+
+		SocketAddress address = CompressDaemon.addressOf(args[0]);
+		try (SocketChannel channel = address instanceof UnixDomainSocketAddress
+				? SocketChannel.open(StandardProtocolFamily.UNIX)
+				: SocketChannel.open()) {
+			channel.connect(address);
+			PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+					Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					Channels.newInputStream(channel), StandardCharsets.UTF_8));
+			writer.println(request);
+			writer.flush();
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("MSG ")) {
+					System.out.println(line.substring(4));
+				} else if (line.startsWith("OK ")) {
+					System.out.println(line.substring(3));
+					return;
+				} else if (line.startsWith("ERR ")) {
+					System.err.println(line.substring(4));
+					System.exit(0);
+				}
+			}
+			System.err.println("Connection Error - Daemon closed the connection");
+		} catch (IOException e) {
+			System.err.println("Connection Error - " + e.getMessage());
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,177 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class keeps a warm JVM running that accepts compression and
+ * decompression jobs over a local socket, so that repeated jobs do not pay for
+ * JVM startup, class loading and JIT warm-up each time. Jobs from different
+ * connections run concurrently on a bounded pool of workers, while each
+ * connection is read by its own thread, so idle clients never hold a worker.
+ *
+ * Each request is one line holding the client's working directory followed by
+ * the arguments of Compress.main, separated by tabs. The input file and the
+ * out directory are resolved against that working directory. The reply is
+ * zero or more "MSG <text>" lines followed by either "OK <output file path>"
+ * or "ERR <error message>". A connection may send any number of requests.
+ */
+public class CompressDaemon {
+
+	/**
+	 * The main entry point of the daemon.
+	 *
+	 * @param args The endpoint to listen on, either a port on the loopback
+	 * interface or the path of a Unix domain socket, optionally followed by the
+	 * number of worker threads.
+	 * @throws IOException If the endpoint cannot be bound.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Input Error - Invalid number of arguments");
+			System.exit(0);
+		}
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (args.length == 2) {
+			try {
+				threads = Integer.parseInt(args[1]);
+			} catch (NumberFormatException e) {
+				System.err.println("Input Error - Invalid argument type");
+				System.exit(0);
+			}
+		}
+
+		SocketAddress address = addressOf(args[0]);
+		ServerSocketChannel server;
+		if (address instanceof UnixDomainSocketAddress) {
+			// A socket file left behind by an earlier daemon blocks the bind
+			Path socketPath = ((UnixDomainSocketAddress) address).getPath();
+			Files.deleteIfExists(socketPath);
+			server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					Files.deleteIfExists(socketPath);
+				} catch (IOException e) {
+					// Nothing left to do while shutting down
+				}
+			}));
+		} else {
+			server = ServerSocketChannel.open();
+		}
+		server.bind(address);
+
+		ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threads));
+		while (true) {
+			SocketChannel connection = server.accept();
+			Thread reader = new Thread(() -> serve(connection, workers));
+			reader.setDaemon(true);
+			reader.start();
+		}
+	}
+
+	/**
+	 * Returns the socket address of an endpoint argument.
+	 *
+	 * @param endpoint A port number on the loopback interface, or the path of
+	 * a Unix domain socket.
+	 * @return The socket address.
+	 */
+	static SocketAddress addressOf(String endpoint) {
+		if (endpoint.matches("\\d+")) {
+			return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+					Integer.parseInt(endpoint));
+		}
+		return UnixDomainSocketAddress.of(endpoint);
+	}
+
+	/**
+	 * Reads the requests of one connection until the client closes it, and
+	 * runs each on the worker pool.
+	 *
+	 * @param connection The client connection.
+	 * @param workers The pool the jobs are run on.
+	 */
+	private static void serve(SocketChannel connection, ExecutorService workers) {
+		try (SocketChannel channel = connection;
+				BufferedReader reader = new BufferedReader(new InputStreamReader(
+						Channels.newInputStream(channel), StandardCharsets.UTF_8));
+				PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+						Channels.newOutputStream(channel), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isEmpty()) {
+					String[] fields = line.split("\t");
+					Future<String> reply = workers.submit(() -> runJob(Paths.get(fields[0]),
+							Arrays.copyOfRange(fields, 1, fields.length)));
+					writer.print(reply.get());
+					writer.flush();
+				}
+			}
+		} catch (IOException | ExecutionException e) {
+			System.err.println("Connection Error - " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Runs one job and returns its reply. Every failure, including errors such
+	 * as running out of memory, is replied as ERR so the client is never left
+	 * waiting.
+	 *
+	 * @param workingDirectory The client's working directory.
+	 * @param args The arguments of the job, as for Compress.main.
+	 * @return The reply lines.
+	 */
+	private static String runJob(Path workingDirectory, String[] args) {
+		StringWriter reply = new StringWriter();
+		PrintWriter writer = new PrintWriter(reply);
+		ByteArrayOutputStream messages = new ByteArrayOutputStream();
+		try (PrintStream out = new PrintStream(messages, true, StandardCharsets.UTF_8)) {
+			if (args.length > 0 && args[0].equals("1")) {
+				throw new IllegalArgumentException(
+						"Input Error - GUI is not available in daemon mode");
+			}
+			if (args.length > 0) {
+				args[args.length - 1] = workingDirectory.resolve(args[args.length - 1]).toString();
+			}
+			String outputFilePath = Compress.run(args, out, workingDirectory);
+
+			for (String message : messages.toString(StandardCharsets.UTF_8).split("\\R")) {
+				if (!message.isEmpty()) {
+					writer.println("MSG " + message);
+				}
+			}
+			writer.println("OK " + Paths.get(outputFilePath).toAbsolutePath().normalize());
+		} catch (IllegalArgumentException e) {
+			writer.println("ERR " + e.getMessage());
+		} catch (IOException e) {
+			writer.println("ERR Error: " + e.getMessage());
+		} catch (Throwable e) {
+			writer.println("ERR Error: " + e);
+		}
+		return reply.toString();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * This class is the library entry point for compressing images into automata.
+ * A Compressor holds no state besides its settings, so one instance can run
+ * any number of compressions concurrently, and nothing is written anywhere
+ * the caller did not ask for.
+ */
+public final class Compressor {
+	private final int method;
+
+	/**
+	 * Constructs a Compressor producing plain automata, as the f flag does.
+	 */
+	public Compressor() {
+		this(0);
+	}
+
+	/**
+	 * Constructs a Compressor producing multi-resolution automata, as the t
+	 * flag does.
+	 *
+	 * @param method The multi-resolution method, from 0 to 3, or 4 and 5 for
+	 * the resolution pyramid under the majority and the any-black rule.
+	 * @throws IllegalArgumentException If the method is out of range.
+	 */
+	public Compressor(int method) {
+		if (method < 0 || method > 5) {
+			throw new IllegalArgumentException("Invalid multi-resolution method " + method);
+		}
+		this.method = method;
+	}
+
+	/**
+	 * Compresses an image into an automaton.
+	 *
+	 * @param image The image to compress.
+	 * @return The automaton.
+	 */
+	public Automaton compress(BilevelImage image) {
+		if (method >= 4) {
+			return new PyramidCompressor(method == 5).compress(image.getPackedBitmap());
+		}
+
+		// Method 1 adds self-loops on every quadrant but the lightest one
+		ImageToTransitionAddresses transitionAddresses = new ImageToTransitionAddresses(
+				image.getPackedBitmap(), method == 1);
+		return new TransitionAddressesToTextFile(transitionAddresses.getTransitionAddresses())
+				.toAutomaton(method, transitionAddresses.getInclusiveQuads());
+	}
+
+	/**
+	 * Compresses an image and writes the automaton in the text file format.
+	 * The writer is flushed but not closed.
+	 *
+	 * @param image The image to compress.
+	 * @param output The writer the automaton is written to.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	public void compress(BilevelImage image, Writer output) throws IOException {
+		compress(image).write(output);
+	}
+
+	/**
+	 * Compresses an image file into an automaton text file.
+	 *
+	 * @param input The image file, in PNG, PBM or raw format.
+	 * @param output The automaton text file to write.
+	 * @throws IOException If a file cannot be read or written.
+	 * @throws ImageFormatException If the input is not a valid image.
+	 */
+	public void compress(Path input, Path output) throws IOException {
+		Automaton automaton = compress(BilevelImage.read(input));
+		try (Writer writer = Files.newBufferedWriter(output)) {
+			automaton.write(writer);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import javax.imageio.ImageIO;
+
+/**
+ * This class provides compression of many images into one shared-dictionary
+ * corpus container, and extraction of single images from it.
+ */
+public class CorpusCompress {
+
+	/**
+	 * The main entry point for corpus compression and extraction.
+	 *
+	 * Compression: 2 <corpus.txt> <image.png>... adds the images to the corpus,
+	 * creating it if it does not exist.
+	 *
+	 * Extraction: 1 <corpus.txt> <image name> writes the image to
+	 * out/<image name>_dec.png.
+	 *
+	 * @param args Command line arguments for specifying the operation mode,
+	 * the corpus file and the images.
+	 * @throws IOException If an error occurs while reading or writing files.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3 || !args[0].matches("[12]")) {
+			System.err.println("Input Error - Invalid number of arguments");
+			System.exit(0);
+		}
+
+		File corpusFile = new File(args[1]);
+		ImageCorpus corpus = new ImageCorpus();
+		if (corpusFile.isFile()) {
+			try (Reader reader = new FileReader(corpusFile)) {
+				corpus = ImageCorpus.read(reader);
+			} catch (IOException e) {
+				System.err.println("Decompress Error - Invalid corpus formatting");
+				System.exit(0);
+			}
+		} else if (args[0].equals("1")) {
+			System.err.println("Input Error - Invalid or missing file");
+			System.exit(0);
+		}
+
+		if (args[0].equals("1")) {// Extraction
+			String name = args[2];
+			if (!corpus.getImageNames().contains(name)) {
+				System.err.println("Decompress Error - No image named " + name);
+				System.exit(0);
+			}
+			BufferedImage image = corpus.extractImage(name);
+			String outputName = new File(name).getName().replace(".png", "") + "_dec.png";
+			if (!ImageIO.write(image, "png", new File("out/" + outputName))) {
+				System.err.println("Error: Error writing image to file");
+				System.exit(0);
+			}
+		} else {// Compression
+			for (int i = 2; i < args.length; i++) {
+				File imageFile = new File(args[i]);
+				BufferedImage image = imageFile.isFile() ? ImageIO.read(imageFile) : null;
+				if (image == null) {
+					System.err.println("Input Error - Invalid or missing file");
+					System.exit(0);
+				}
+				try {
+					corpus.addImage(imageFile.getName(), image);
+				} catch (IllegalArgumentException e) {
+					System.err.println("Compress Error - Invalid input image " + args[i]);
+					System.exit(0);
+				}
+			}
+
+			// The corpus is written next to the old one and renamed over it, so a
+			// failed write leaves the old corpus intact
+			Path target = corpusFile.toPath().toAbsolutePath();
+			Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(),
+					".tmp");
+			try {
+				try (Writer writer = Files.newBufferedWriter(temp)) {
+					corpus.write(writer);
+				}
+				Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+	}
+}
\ No newline at end of file
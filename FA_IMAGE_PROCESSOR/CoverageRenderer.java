@@ -0,0 +1,368 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+/**
+ * This class renders an automaton at any output size as an anti-aliased
+ * grayscale image. It first computes, for every state, the fraction of its
+ * sub-image that is black. Rendering then descends the automaton only until a
+ * block shrinks to a single output pixel, and shades that pixel with the
+ * block's coverage, so the cost follows the number of output pixels rather
+ * than the resolution of the compressed image.
+ *
+ * The axes are refined separately. Once a block lies within one row of
+ * pixels, its top and bottom quadrants are no longer told apart, and likewise
+ * for columns. Each block is then drawn from a weighted set of states, and
+ * the set holds each state at most once. A 1000x1 output thus costs about
+ * 1000 blocks rather than 1000^2.
+ */
+public class CoverageRenderer {
+	private static final int MAX_ITERATIONS = 1000;
+	private static final double EPSILON = 1e-9;
+	private static final double MIN_EXTENT = 1.0 / 256;
+
+	private final Automaton automaton;
+	private final double[] coverage;
+
+	/**
+	 * Constructs a CoverageRenderer and computes the coverage of every state.
+	 *
+	 * @param automaton The automaton to render.
+	 * @throws IllegalArgumentException If the automaton is a kd-tree automaton.
+	 */
+	public CoverageRenderer(Automaton automaton) {
+		if (automaton.isKdTree()) {
+			throw new IllegalArgumentException("Not a quadtree automaton");
+		}
+		this.automaton = automaton;
+		this.coverage = computeCoverage(automaton);
+	}
+
+	/**
+	 * The main entry point for coverage rendering.
+	 *
+	 * @param args The output width, the output height and the automaton text
+	 * file. The image is written to out/<name>_<width>x<height>.png.
+	 */
+	public static void main(String[] args) {
+		if (args.length != 3) {
+			System.err.println("Input Error - Invalid number of arguments");
+			System.exit(0);
+		}
+
+		int width = 0;
+		int height = 0;
+		try {
+			width = Integer.parseInt(args[0]);
+			height = Integer.parseInt(args[1]);
+		} catch (NumberFormatException e) {
+			System.err.println("Input Error - Invalid argument type");
+			System.exit(0);
+		}
+		if (width < 1 || height < 1) {
+			System.err.println("Input Error - Invalid output size");
+			System.exit(0);
+		}
+
+		try {
+			CoverageRenderer renderer = new CoverageRenderer(Automaton.read(new File(args[2])));
+			String name = new File(args[2]).getName().replace(".txt", "");
+			if (!ImageIO.write(renderer.render(width, height), "png",
+					new File("out/" + name + "_" + width + "x" + height + ".png"))) {
+				throw new IOException("Error writing image to file");
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * Returns the fraction of a state's sub-image that is black.
+	 *
+	 * @param state The state.
+	 * @return The coverage, between 0 and 1.
+	 */
+	public double getCoverage(int state) {
+		return coverage[state];
+	}
+
+	/**
+	 * Renders the automaton as a grayscale image of the given size. The image
+	 * of the automaton is stretched to fill it.
+	 *
+	 * @param width The width of the output image.
+	 * @param height The height of the output image.
+	 * @return The rendered image, black where fully covered.
+	 */
+	public BufferedImage render(int width, int height) {
+		double[] darkness = new double[width * height];
+		Frontier root = new Frontier();
+		root.add(0, 1);
+		renderBlock(darkness, width, height, root, 0, 0, width, height);
+
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		byte[] gray = new byte[width * height];
+		for (int i = 0; i < gray.length; i++) {
+			double value = Math.min(1, Math.max(0, darkness[i]));
+			gray[i] = (byte) Math.round(255 * (1 - value));
+		}
+		image.getRaster().setDataElements(0, 0, width, height, gray);
+		return image;
+	}
+
+	/**
+	 * Recursively shades the output pixels covered by a block, splitting it
+	 * only along the axes on which it does not lie within one output pixel.
+	 *
+	 * @param darkness The black coverage accumulated per output pixel.
+	 * @param width The width of the output image.
+	 * @param height The height of the output image.
+	 * @param block The states whose sub-images make up the block, weighted by
+	 * their share of it.
+	 * @param x The left edge of the block, in output pixels.
+	 * @param y The top edge of the block, in output pixels.
+	 * @param blockWidth The width of the block, in output pixels.
+	 * @param blockHeight The height of the block, in output pixels.
+	 */
+	private void renderBlock(double[] darkness, int width, int height, Frontier block, double x,
+			double y, double blockWidth, double blockHeight) {
+		double value = 0;
+		boolean uniform = true;
+		for (int i = 0; i < block.size; i++) {
+			value += block.weights[i] * coverage[block.states[i]];
+			uniform &= automaton.isAcceptState(block.states[i]);
+		}
+		if (value == 0) {
+			return;
+		}
+
+		// An accepted block is uniformly black, and a block no larger than a
+		// pixel is shaded with its coverage instead of being refined
+		boolean splitX = needsSplit(x, blockWidth);
+		boolean splitY = needsSplit(y, blockHeight);
+		if (uniform || (!splitX && !splitY)) {
+			splat(darkness, width, height, x, y, blockWidth, blockHeight, value);
+			return;
+		}
+
+		// Symbols: 0 bottom left, 1 top left, 2 bottom right, 3 top right.
+		// Parts are numbered like symbols, and an axis that is not split maps
+		// both of its halves onto one part
+		double partWidth = splitX ? blockWidth / 2 : blockWidth;
+		double partHeight = splitY ? blockHeight / 2 : blockHeight;
+		double share = (splitX ? 1 : 0.5) * (splitY ? 1 : 0.5);
+		Frontier[] parts = new Frontier[Automaton.ALPHABET_SIZE];
+		for (int i = 0; i < block.size; i++) {
+			int state = block.states[i];
+			double weight = block.weights[i];
+			boolean accepting = automaton.isAcceptState(state);
+			int[] children = accepting ? null : strongestChildren(state);
+			for (int symbol = 0; symbol < Automaton.ALPHABET_SIZE; symbol++) {
+				int part = (splitX ? symbol & 2 : 0) | (splitY ? symbol & 1 : 0);
+				// Any part of an accepted sub-image is black
+				int child = accepting ? state : children[symbol];
+				if (child >= 0 && coverage[child] > 0) {
+					if (parts[part] == null) {
+						parts[part] = new Frontier();
+					}
+					parts[part].add(child, weight * share);
+				}
+			}
+		}
+
+		for (int part = 0; part < Automaton.ALPHABET_SIZE; part++) {
+			if (parts[part] != null) {
+				double partX = (part & 2) == 0 ? x : x + partWidth;
+				double partY = (part & 1) == 0 && splitY ? y + partHeight : y;
+				renderBlock(darkness, width, height, parts[part], partX, partY, partWidth,
+						partHeight);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether a block has to be split along an axis, because it spans
+	 * more than one output pixel on it or straddles the border of two pixels.
+	 * Blocks thinner than MIN_EXTENT are shaded by overlap instead, which
+	 * also ends the descent into cycles.
+	 *
+	 * @param start The first edge of the block on the axis, in output pixels.
+	 * @param extent The length of the block on the axis, in output pixels.
+	 * @return true if the block is to be split along the axis.
+	 */
+	private static boolean needsSplit(double start, double extent) {
+		return extent > 1
+				|| (extent > MIN_EXTENT && Math.floor(start) < Math.ceil(start + extent) - 1);
+	}
+
+	/**
+	 * Adds a uniform coverage over a rectangle to the output pixels it
+	 * overlaps, weighted by the overlapping area.
+	 *
+	 * @param darkness The black coverage accumulated per output pixel.
+	 * @param width The width of the output image.
+	 * @param height The height of the output image.
+	 * @param x The left edge of the rectangle.
+	 * @param y The top edge of the rectangle.
+	 * @param rectangleWidth The width of the rectangle.
+	 * @param rectangleHeight The height of the rectangle.
+	 * @param value The coverage of the rectangle.
+	 */
+	private static void splat(double[] darkness, int width, int height, double x, double y,
+			double rectangleWidth, double rectangleHeight, double value) {
+		int firstColumn = (int) Math.floor(x);
+		int lastColumn = Math.min(width - 1, (int) Math.ceil(x + rectangleWidth) - 1);
+		int firstRow = (int) Math.floor(y);
+		int lastRow = Math.min(height - 1, (int) Math.ceil(y + rectangleHeight) - 1);
+
+		for (int row = firstRow; row <= lastRow; row++) {
+			double overlapHeight = Math.min(row + 1, y + rectangleHeight) - Math.max(row, y);
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				double overlapWidth = Math.min(column + 1, x + rectangleWidth)
+						- Math.max(column, x);
+				darkness[row * width + column] += value * overlapWidth * overlapHeight;
+			}
+		}
+	}
+
+	/**
+	 * Returns, for each symbol, the destination of the state's transition on
+	 * it. When a multi-resolution automaton has several transitions on one
+	 * symbol, the destination with the highest coverage is used.
+	 *
+	 * @param state The state.
+	 * @return The destination per symbol, or -1 where there is none.
+	 */
+	private int[] strongestChildren(int state) {
+		int[] children = { -1, -1, -1, -1 };
+		for (int i = automaton.getTransitionStart(state); i < automaton
+				.getTransitionEnd(state); i++) {
+			int symbol = automaton.getTransitionSymbol(i);
+			int target = automaton.getTransitionTarget(i);
+			if (children[symbol] < 0 || coverage[target] > coverage[children[symbol]]) {
+				children[symbol] = target;
+			}
+		}
+		return children;
+	}
+
+	/**
+	 * Computes the coverage of every state as the least fixed point of:
+	 * accept states are fully black, and any other state is the average of its
+	 * quadrants' coverage. Acyclic automata are solved in one pass over their
+	 * states in reverse topological order. Iteration handles the cycles of
+	 * multi-resolution automata.
+	 *
+	 * @param automaton The automaton.
+	 * @return The coverage of every state.
+	 */
+	private static double[] computeCoverage(Automaton automaton) {
+		int numberOfStates = automaton.getNumberOfStates();
+		double[] current = new double[numberOfStates];
+		double[] next = new double[numberOfStates];
+
+		int[] order = automaton.reverseTopologicalOrder();
+		if (order != null) {
+			// Every target is final before the states leading to it
+			for (int state : order) {
+				current[state] = stateCoverage(automaton, state, current);
+			}
+			return current;
+		}
+
+		for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+			double change = 0;
+			for (int state = 0; state < numberOfStates; state++) {
+				next[state] = stateCoverage(automaton, state, current);
+				change = Math.max(change, Math.abs(next[state] - current[state]));
+			}
+
+			double[] swap = current;
+			current = next;
+			next = swap;
+			if (change < EPSILON) {
+				break;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Computes the coverage of one state from the coverage of its targets.
+	 *
+	 * @param automaton The automaton.
+	 * @param state The state.
+	 * @param coverage The coverage of every state so far.
+	 * @return 1 for accept states, and otherwise the average over the symbols
+	 * of the highest coverage reached on each.
+	 */
+	private static double stateCoverage(Automaton automaton, int state, double[] coverage) {
+		if (automaton.isAcceptState(state)) {
+			return 1;
+		}
+		double[] best = new double[Automaton.ALPHABET_SIZE];
+		for (int i = automaton.getTransitionStart(state); i < automaton
+				.getTransitionEnd(state); i++) {
+			int symbol = automaton.getTransitionSymbol(i);
+			best[symbol] = Math.max(best[symbol], coverage[automaton.getTransitionTarget(i)]);
+		}
+		return (best[0] + best[1] + best[2] + best[3]) / 4;
+	}
+
+	/**
+	 * A weighted set of states that together make up one block. Each state
+	 * is held at most once, with the sum of the weights it was added with.
+	 */
+	private static final class Frontier {
+		private int[] states = new int[1];
+		private double[] weights = new double[1];
+		private int size;
+		private Map<Integer, Integer> index;
+
+		/**
+		 * Adds a weight to a state, adding the state if it is new.
+		 *
+		 * @param state The state.
+		 * @param weight The weight to add.
+		 */
+		private void add(int state, double weight) {
+			Integer slot = null;
+			if (index != null) {
+				slot = index.get(state);
+			} else {
+				// Most blocks hold one or two states, so a scan is enough
+				for (int i = 0; i < size && slot == null; i++) {
+					if (states[i] == state) {
+						slot = i;
+					}
+				}
+			}
+			if (slot != null) {
+				weights[slot] += weight;
+				return;
+			}
+
+			if (size == states.length) {
+				states = Arrays.copyOf(states, size * 2);
+				weights = Arrays.copyOf(weights, size * 2);
+			}
+			states[size] = state;
+			weights[size] = weight;
+			if (index == null && size == 8) {
+				index = new HashMap<>();
+				for (int i = 0; i < size; i++) {
+					index.put(states[i], i);
+				}
+			}
+			if (index != null) {
+				index.put(state, size);
+			}
+			size++;
+		}
+	}
+}
\ No newline at end of file
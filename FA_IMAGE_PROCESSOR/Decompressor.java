@@ -0,0 +1,87 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * This class is the library entry point for decompressing automata into
+ * images. A Decompressor holds no state besides its settings, so one instance
+ * can run any number of decompressions concurrently.
+ */
+public final class Decompressor {
+	private final int wordLength;
+
+	/**
+	 * Constructs a Decompressor for plain automata, as the f flag does.
+	 */
+	public Decompressor() {
+		this.wordLength = -1;
+	}
+
+	/**
+	 * Constructs a Decompressor for multi-resolution automata, as the t flag
+	 * does, decoding the words of the given length.
+	 *
+	 * @param wordLength The word length, so the image side is 2^wordLength.
+	 * @throws IllegalArgumentException If the word length is negative.
+	 */
+	public Decompressor(int wordLength) {
+		if (wordLength < 0) {
+			throw new IllegalArgumentException("Invalid word length " + wordLength);
+		}
+		this.wordLength = wordLength;
+	}
+
+	/**
+	 * Decompresses an automaton into an image.
+	 *
+	 * @param automaton The automaton to decompress.
+	 * @return The image.
+	 * @throws IllegalArgumentException If the automaton is a kd-tree
+	 * automaton, which KdTreeCodec decompresses.
+	 */
+	public BilevelImage decompress(Automaton automaton) {
+		if (automaton.isKdTree()) {
+			throw new IllegalArgumentException("Not a quadtree automaton");
+		}
+		if (wordLength < 0) {
+			// Plain words are drawn as they are enumerated
+			return new BilevelImage(TransitionAddressesToImage.toBitmap(automaton));
+		}
+		TextFileToTransitionAddresses transitionAddresses = new TextFileToTransitionAddresses(
+				automaton, wordLength);
+		// The side is 2^wordLength even when no word is accepted
+		return new BilevelImage(TransitionAddressesToImage
+				.toBitmap(transitionAddresses.getTransitionAddresses(), 1 << wordLength));
+	}
+
+	/**
+	 * Reads an automaton in the text file format and decompresses it. The
+	 * reader is not closed.
+	 *
+	 * @param input The reader to read the automaton from.
+	 * @return The image.
+	 * @throws IOException If the input cannot be read.
+	 * @throws AutomatonFormatException If the input is badly formatted.
+	 */
+	public BilevelImage decompress(Reader input) throws IOException {
+		return decompress(Automaton.read(input));
+	}
+
+	/**
+	 * Decompresses an automaton text file into an image file.
+	 *
+	 * @param input The automaton text file.
+	 * @param output The image file to write, as PBM or raw bits when the
+	 * extension is .pbm or .raw and as PNG otherwise.
+	 * @throws IOException If a file cannot be read or written.
+	 * @throws AutomatonFormatException If the input is badly formatted.
+	 */
+	public void decompress(Path input, Path output) throws IOException {
+		BilevelImage image;
+		try (Reader reader = Files.newBufferedReader(input)) {
+			image = decompress(reader);
+		}
+		image.write(output);
+	}
+}
\ No newline at end of file
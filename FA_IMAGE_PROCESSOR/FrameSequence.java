@@ -0,0 +1,395 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class compresses a sequence of equally sized frames, such as the frames
+ * of an animation or a video mask, into one shared SubImageStateStore. The
+ * quadrant states of the previous frame are kept, and each new frame is
+ * compared with the previous one through their packed bits, a byte of eight
+ * pixels at a time: only the quadrants containing a changed pixel are
+ * interned again. Callers that know which region changed can pass it, so
+ * that only that region is compared, and the cost of a frame then follows the
+ * amount of change rather than the frame size.
+ *
+ * Every frame is written as a record holding the root state of the frame and
+ * only the states that were added for it: a "root size totalStates
+ * transitionCount" line, the new accept states, then the new states'
+ * transitions, one "from to symbol" per line.
+ */
+public class FrameSequence {
+	private final SubImageStateStore store;
+	private final int side;
+	private final int[][] levels;
+	private final int[][] dirtyStamps;
+	private byte[] previousBits;
+	private int frameCount;
+	private int writtenStates;
+
+	/**
+	 * Constructs an empty FrameSequence.
+	 *
+	 * @param side The side length of every frame, a power of 2.
+	 * @throws IllegalArgumentException If the side is not a power of 2.
+	 */
+	public FrameSequence(int side) {
+		if (side < 1 || (side & (side - 1)) != 0) {
+			throw new IllegalArgumentException("Invalid input image");
+		}
+		this.store = new SubImageStateStore(Automaton.ALPHABET_SIZE);
+		this.side = side;
+
+		int depth = Integer.numberOfTrailingZeros(side);
+		this.levels = new int[depth + 1][];
+		this.dirtyStamps = new int[depth + 1][];
+		for (int level = 0; level <= depth; level++) {
+			int levelSide = side >> level;
+			levels[level] = new int[levelSide * levelSide];
+			dirtyStamps[level] = new int[levelSide * levelSide];
+		}
+		this.frameCount = 0;
+		this.writtenStates = 0;
+	}
+
+	/**
+	 * Compresses the next frame and writes its record.
+	 *
+	 * @param frame The frame, a black and white image of the sequence's size.
+	 * @param output The writer to write the frame record to.
+	 * @return The root state of the frame.
+	 * @throws IOException If an error occurs while writing.
+	 * @throws ImageFormatException If the frame is not black and white.
+	 * @throws IllegalArgumentException If the frame has the wrong size.
+	 */
+	public int compressFrame(BufferedImage frame, Writer output) throws IOException {
+		int root = addFrame(frame);
+		writeFrame(output, root);
+		return root;
+	}
+
+	/**
+	 * Interns the quadrants of the next frame that differ from the previous
+	 * frame and returns the frame's root state.
+	 *
+	 * @param frame The frame, a black and white image of the sequence's size.
+	 * @return The root state of the frame.
+	 * @throws ImageFormatException If the frame is not black and white.
+	 * @throws IllegalArgumentException If the frame has the wrong size.
+	 */
+	public int addFrame(BufferedImage frame) throws ImageFormatException {
+		if (frame.getWidth() != side || frame.getHeight() != side) {
+			throw new IllegalArgumentException("Frame size differs from the sequence");
+		}
+		PixelScanner.Result scan = PixelScanner.getInstance().scan(frame);
+		if (!scan.isBlackAndWhite()) {
+			throw new ImageFormatException("Image is not black and white");
+		}
+		return addFrame(scan.getBitmap());
+	}
+
+	/**
+	 * Interns the quadrants of the next frame that differ from the previous
+	 * frame and returns the frame's root state.
+	 *
+	 * @param frame The frame, of the sequence's size.
+	 * @return The root state of the frame.
+	 * @throws IllegalArgumentException If the frame has the wrong size.
+	 */
+	public int addFrame(PackedBitmap frame) {
+		return addFrame(frame, 0, 0, side, side);
+	}
+
+	/**
+	 * Interns the quadrants of the next frame that differ from the previous
+	 * frame and returns the frame's root state. Only the given rectangle is
+	 * compared with the previous frame, so the cost of a frame follows the
+	 * size of the region the caller knows to have changed. Pixels outside the
+	 * rectangle must be unchanged.
+	 *
+	 * @param frame The frame, of the sequence's size.
+	 * @param x The x-coordinate of the top left corner of the changed region.
+	 * @param y The y-coordinate of the top left corner of the changed region.
+	 * @param w The width of the changed region.
+	 * @param h The height of the changed region.
+	 * @return The root state of the frame.
+	 * @throws IllegalArgumentException If the frame has the wrong size or the
+	 * region does not lie within it.
+	 */
+	public int addFrame(PackedBitmap frame, int x, int y, int w, int h) {
+		if (frame.getWidth() != side || frame.getHeight() != side) {
+			throw new IllegalArgumentException("Frame size differs from the sequence");
+		}
+		if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > side || y + h > side) {
+			throw new IllegalArgumentException("Changed region lies outside the frame");
+		}
+		ByteBuffer bits = frame.getBits();
+		int rowBytes = frame.getRowBytes();
+		int black = store.blackState();
+		int[] leaves = levels[0];
+		frameCount++;
+
+		if (previousBits == null) {
+			previousBits = new byte[rowBytes * side];
+			bits.get(0, previousBits);
+			for (int row = 0; row < side; row++) {
+				for (int column = 0; column < side; column++) {
+					leaves[row * side + column] = frame.isBlack(column, row) ? black
+							: SubImageStateStore.NO_STATE;
+				}
+			}
+			for (int level = 1; level < levels.length; level++) {
+				int levelSide = side >> level;
+				for (int quadrantY = 0; quadrantY < levelSide; quadrantY++) {
+					for (int quadrantX = 0; quadrantX < levelSide; quadrantX++) {
+						updateQuadrant(level, quadrantX, quadrantY, black);
+					}
+				}
+			}
+			return levels[levels.length - 1][0];
+		}
+		if (w == 0 || h == 0) {
+			return levels[levels.length - 1][0];
+		}
+
+		// Find the changed bytes of the region a row at a time and mark the
+		// parents of their changed pixels
+		int firstByte = x >> 3;
+		int length = ((x + w - 1) >> 3) - firstByte + 1;
+		byte[] row = new byte[length];
+		int[] dirty = new int[16];
+		int dirtyCount = 0;
+		for (int pixelY = y; pixelY < y + h; pixelY++) {
+			int offset = pixelY * rowBytes + firstByte;
+			bits.get(offset, row);
+			int from = 0;
+			while (from < length) {
+				int mismatch = Arrays.mismatch(previousBits, offset + from, offset + length, row,
+						from, length);
+				if (mismatch < 0) {
+					break;
+				}
+				int b = from + mismatch;
+				int changed = (previousBits[offset + b] ^ row[b]) & 0xFF;
+				previousBits[offset + b] = row[b];
+
+				// Bit 7 is the leftmost pixel of the byte
+				for (; changed != 0; changed &= changed - 1) {
+					int pixelX = (firstByte + b) * 8 + 7 - Integer.numberOfTrailingZeros(changed);
+					if (pixelX >= side) {
+						continue;
+					}
+					int i = pixelY * side + pixelX;
+					leaves[i] = leaves[i] == SubImageStateStore.NO_STATE ? black
+							: SubImageStateStore.NO_STATE;
+					if (levels.length > 1) {
+						int parent = (pixelY >> 1) * (side >> 1) + (pixelX >> 1);
+						if (dirtyStamps[1][parent] != frameCount) {
+							dirtyStamps[1][parent] = frameCount;
+							dirty = append(dirty, dirtyCount++, parent);
+						}
+					}
+				}
+				from = b + 1;
+			}
+		}
+
+		// Re-intern the marked quadrants level by level, marking a parent
+		// only when the quadrant's state actually changed
+		for (int level = 1; level < levels.length && dirtyCount > 0; level++) {
+			int levelSide = side >> level;
+			int[] nextDirty = new int[16];
+			int nextDirtyCount = 0;
+			for (int d = 0; d < dirtyCount; d++) {
+				int quadrantX = dirty[d] % levelSide;
+				int quadrantY = dirty[d] / levelSide;
+				boolean changed = updateQuadrant(level, quadrantX, quadrantY, black);
+				if (changed && level + 1 < levels.length) {
+					int parent = (quadrantY >> 1) * (levelSide >> 1) + (quadrantX >> 1);
+					if (dirtyStamps[level + 1][parent] != frameCount) {
+						dirtyStamps[level + 1][parent] = frameCount;
+						nextDirty = append(nextDirty, nextDirtyCount++, parent);
+					}
+				}
+			}
+			dirty = nextDirty;
+			dirtyCount = nextDirtyCount;
+		}
+		return levels[levels.length - 1][0];
+	}
+
+	/**
+	 * Writes the record of a frame: its root and the states added since the
+	 * previous record.
+	 *
+	 * @param output The writer to write the record to.
+	 * @param root The root state of the frame.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	public void writeFrame(Writer output, int root) throws IOException {
+		BufferedWriter writer = new BufferedWriter(output);
+		int arity = store.getArity();
+
+		int transitionCount = 0;
+		StringBuilder acceptLine = new StringBuilder();
+		for (int state = writtenStates; state < store.size(); state++) {
+			if (store.isAccepting(state)) {
+				if (acceptLine.length() > 0) {
+					acceptLine.append(' ');
+				}
+				acceptLine.append(state);
+			}
+			for (int symbol = 0; symbol < arity; symbol++) {
+				if (store.getChild(state, symbol) != SubImageStateStore.NO_STATE) {
+					transitionCount++;
+				}
+			}
+		}
+
+		writer.write(root + " " + side + " " + store.size() + " " + transitionCount);
+		writer.newLine();
+		writer.write(acceptLine.toString());
+		writer.newLine();
+		for (int state = writtenStates; state < store.size(); state++) {
+			for (int symbol = 0; symbol < arity; symbol++) {
+				int child = store.getChild(state, symbol);
+				if (child != SubImageStateStore.NO_STATE) {
+					writer.write(state + " " + child + " " + symbol);
+					writer.newLine();
+				}
+			}
+		}
+		writer.flush();
+		writtenStates = store.size();
+	}
+
+	/**
+	 * Reads frame records up to the given frame and decompresses that frame.
+	 * Records after it are never read.
+	 *
+	 * @param input The reader to read the frame records from.
+	 * @param frameIndex The index of the frame to decompress, from 0.
+	 * @return The decompressed frame.
+	 * @throws IOException If the input cannot be read, is badly formatted or
+	 * has fewer frames.
+	 */
+	public static BufferedImage readFrame(Reader input, int frameIndex) throws IOException {
+		BufferedReader reader = new BufferedReader(input);
+		SubImageStateStore store = new SubImageStateStore(Automaton.ALPHABET_SIZE);
+		int arity = store.getArity();
+
+		try {
+			for (int frame = 0;; frame++) {
+				String line = reader.readLine();
+				if (line == null) {
+					throw new IOException("Sequence has no frame " + frameIndex);
+				}
+				String[] header = line.trim().split("\\s+");
+				if (header.length != 4) {
+					throw new IOException("Invalid sequence formatting");
+				}
+				int root = Integer.parseInt(header[0]);
+				int frameSide = Integer.parseInt(header[1]);
+				int totalStates = Integer.parseInt(header[2]);
+				int transitionCount = Integer.parseInt(header[3]);
+				int firstState = store.size();
+				if (totalStates < firstState || root >= totalStates
+						|| root < SubImageStateStore.NO_STATE) {
+					throw new IOException("Invalid sequence formatting");
+				}
+
+				boolean[] accepting = new boolean[totalStates - firstState];
+				line = reader.readLine();
+				if (line == null) {
+					throw new IOException("Invalid sequence formatting");
+				}
+				for (String token : line.trim().split("\\s+")) {
+					if (!token.isEmpty()) {
+						int state = Integer.parseInt(token);
+						if (state < firstState || state >= totalStates) {
+							throw new IOException("Invalid accept state");
+						}
+						accepting[state - firstState] = true;
+					}
+				}
+
+				int[] children = new int[accepting.length * arity];
+				Arrays.fill(children, SubImageStateStore.NO_STATE);
+				for (int t = 0; t < transitionCount; t++) {
+					line = reader.readLine();
+					if (line == null) {
+						throw new IOException("Invalid sequence formatting");
+					}
+					String[] numbers = line.trim().split("\\s+");
+					int fromState = Integer.parseInt(numbers[0]);
+					int toState = Integer.parseInt(numbers[1]);
+					int symbol = Integer.parseInt(numbers[2]);
+					if (fromState < firstState || fromState >= totalStates || toState < 0
+							|| toState >= fromState || symbol < 0 || symbol >= arity) {
+						throw new IOException("Invalid transition");
+					}
+					children[(fromState - firstState) * arity + symbol] = toState;
+				}
+
+				// Re-intern the new states; each must keep its number
+				int[] childStates = new int[arity];
+				for (int i = 0; i < accepting.length; i++) {
+					System.arraycopy(children, i * arity, childStates, 0, arity);
+					if (store.intern(accepting[i], childStates) != firstState + i) {
+						throw new IOException("Invalid sequence formatting");
+					}
+				}
+
+				if (frame == frameIndex) {
+					return store.renderImage(root, frameSide);
+				}
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Invalid sequence formatting", e);
+		}
+	}
+
+	/**
+	 * Recomputes the state of one quadrant from its four sub-quadrants.
+	 *
+	 * @param level The level of the quadrant, 1 for 2x2 quadrants.
+	 * @param x The x-coordinate of the quadrant within its level.
+	 * @param y The y-coordinate of the quadrant within its level.
+	 * @param black The black state of the store.
+	 * @return true if the quadrant's state changed, false otherwise.
+	 */
+	private boolean updateQuadrant(int level, int x, int y, int black) {
+		int[] below = levels[level - 1];
+		int belowSide = side >> (level - 1);
+		int top = 2 * y * belowSide + 2 * x;
+		int bottom = top + belowSide;
+		int[] quadrant = { below[bottom], below[top], below[bottom + 1], below[top + 1] };
+
+		int index = y * (belowSide >> 1) + x;
+		int state = store.internQuadrant(quadrant, black);
+		boolean changed = levels[level][index] != state;
+		levels[level][index] = state;
+		return changed;
+	}
+
+	/**
+	 * Stores a value at the given position of an int array, growing it if
+	 * needed.
+	 *
+	 * @param array The array.
+	 * @param index The position.
+	 * @param value The value to store.
+	 * @return The array, or its grown copy.
+	 */
+	private static int[] append(int[] array, int index, int value) {
+		if (index == array.length) {
+			array = Arrays.copyOf(array, index * 2);
+		}
+		array[index] = value;
+		return array;
+	}
+}
\ No newline at end of file
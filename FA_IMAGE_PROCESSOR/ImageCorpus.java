@@ -0,0 +1,287 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class stores many images in one shared SubImageStateStore. Every image
+ * is a root state in the store, so tiles, glyphs and other sub-images that
+ * repeat across the corpus are stored only once. The corpus is saved as a
+ * single container text file from which any image can be extracted on its
+ * own.
+ *
+ * The container holds the number of states, the accept states, the number of
+ * images, one "root size name" line per image (root -1 for an entirely white
+ * image) and then one "from to symbol" transition per line.
+ */
+public class ImageCorpus {
+	private final SubImageStateStore store;
+	private final Map<String, int[]> images;
+
+	/**
+	 * Constructs an empty ImageCorpus.
+	 */
+	public ImageCorpus() {
+		this.store = new SubImageStateStore(Automaton.ALPHABET_SIZE);
+		this.images = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Returns the names of the images in the corpus, in insertion order.
+	 *
+	 * @return The image names.
+	 */
+	public Set<String> getImageNames() {
+		return images.keySet();
+	}
+
+	/**
+	 * Returns the number of states shared by all images of the corpus.
+	 *
+	 * @return The number of states.
+	 */
+	public int getNumberOfStates() {
+		return store.size();
+	}
+
+	/**
+	 * Adds an image to the corpus, replacing any image of the same name.
+	 *
+	 * @param name The name the image is stored under.
+	 * @param image A square black and white image whose side is a power of 2.
+	 * @throws IllegalArgumentException If the image is not square, not a power
+	 * of 2 or not purely black and white.
+	 */
+	public void addImage(String name, BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		if (width != height || (height & (height - 1)) != 0) {
+			throw new IllegalArgumentException("Invalid input image");
+		}
+		PixelScanner.Result scan = PixelScanner.getInstance().scan(image);
+		if (!scan.isBlackAndWhite()) {
+			throw new IllegalArgumentException("Invalid input image");
+		}
+
+		images.put(name, new int[] { store.internBitmap(scan.getBitmap()), width });
+	}
+
+	/**
+	 * Decompresses a single image of the corpus.
+	 *
+	 * @param name The name of the image.
+	 * @return The decompressed image.
+	 * @throws IllegalArgumentException If there is no image with that name.
+	 */
+	public BufferedImage extractImage(String name) {
+		int[] image = images.get(name);
+		if (image == null) {
+			throw new IllegalArgumentException("No image named " + name);
+		}
+		return store.renderImage(image[0], image[1]);
+	}
+
+	/**
+	 * Writes the corpus in the container format. Only the states reachable
+	 * from an image are written, so the states of replaced images are dropped.
+	 * States keep the order they were interned in, so every state's
+	 * transitions lead to states written before it.
+	 *
+	 * @param output The writer to write the container to.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	public void write(Writer output) throws IOException {
+		int[] number = numberLiveStates();
+		int liveStates = 0;
+		for (int state = 0; state < store.size(); state++) {
+			if (number[state] != SubImageStateStore.NO_STATE) {
+				liveStates++;
+			}
+		}
+
+		BufferedWriter writer = new BufferedWriter(output);
+		writer.write(Integer.toString(liveStates));
+		writer.newLine();
+
+		StringBuilder acceptLine = new StringBuilder();
+		for (int state = 0; state < store.size(); state++) {
+			if (number[state] != SubImageStateStore.NO_STATE && store.isAccepting(state)) {
+				if (acceptLine.length() > 0) {
+					acceptLine.append(' ');
+				}
+				acceptLine.append(number[state]);
+			}
+		}
+		writer.write(acceptLine.toString());
+		writer.newLine();
+
+		writer.write(Integer.toString(images.size()));
+		writer.newLine();
+		for (Map.Entry<String, int[]> image : images.entrySet()) {
+			int root = image.getValue()[0];
+			writer.write((root == SubImageStateStore.NO_STATE ? root : number[root]) + " "
+					+ image.getValue()[1] + " " + image.getKey());
+			writer.newLine();
+		}
+
+		for (int state = 0; state < store.size(); state++) {
+			if (number[state] == SubImageStateStore.NO_STATE) {
+				continue;
+			}
+			for (int symbol = 0; symbol < store.getArity(); symbol++) {
+				int child = store.getChild(state, symbol);
+				if (child != SubImageStateStore.NO_STATE) {
+					writer.write(number[state] + " " + number[child] + " " + symbol);
+					writer.newLine();
+				}
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Numbers the states reachable from the roots of the images, keeping
+	 * their order in the store.
+	 *
+	 * @return The new number of each state, or NO_STATE for unreachable ones.
+	 */
+	private int[] numberLiveStates() {
+		boolean[] live = new boolean[store.size()];
+		for (int[] image : images.values()) {
+			if (image[0] != SubImageStateStore.NO_STATE) {
+				live[image[0]] = true;
+			}
+		}
+
+		// Children are interned before their parents, so a downward sweep
+		// reaches every state below a live one
+		for (int state = store.size() - 1; state >= 0; state--) {
+			if (!live[state]) {
+				continue;
+			}
+			for (int symbol = 0; symbol < store.getArity(); symbol++) {
+				int child = store.getChild(state, symbol);
+				if (child != SubImageStateStore.NO_STATE) {
+					live[child] = true;
+				}
+			}
+		}
+
+		int[] number = new int[store.size()];
+		int count = 0;
+		for (int state = 0; state < store.size(); state++) {
+			number[state] = live[state] ? count++ : SubImageStateStore.NO_STATE;
+		}
+		return number;
+	}
+
+	/**
+	 * Reads a corpus from the container format. The states are interned again
+	 * in file order, so more images can be added to the loaded corpus.
+	 *
+	 * @param input The reader to read the container from.
+	 * @return The loaded ImageCorpus.
+	 * @throws IOException If the input cannot be read.
+	 * @throws AutomatonFormatException If the input is badly formatted.
+	 */
+	public static ImageCorpus read(Reader input) throws IOException {
+		BufferedReader reader = new BufferedReader(input);
+		ImageCorpus corpus = new ImageCorpus();
+		int arity = corpus.store.getArity();
+
+		try {
+			int numberOfStates = Integer.parseInt(readLine(reader).trim());
+			boolean[] accepting = new boolean[numberOfStates];
+			for (String token : readLine(reader).trim().split("\\s+")) {
+				if (!token.isEmpty()) {
+					accepting[checkState(Integer.parseInt(token), numberOfStates)] = true;
+				}
+			}
+
+			int numberOfImages = Integer.parseInt(readLine(reader).trim());
+			for (int i = 0; i < numberOfImages; i++) {
+				String[] fields = readLine(reader).trim().split("\\s+", 3);
+				if (fields.length != 3) {
+					throw new AutomatonFormatException("Invalid corpus formatting");
+				}
+				int root = Integer.parseInt(fields[0]);
+				if (root != SubImageStateStore.NO_STATE) {
+					checkState(root, numberOfStates);
+				}
+				corpus.images.put(fields[2], new int[] { root, Integer.parseInt(fields[1]) });
+			}
+
+			int[] children = new int[numberOfStates * arity];
+			Arrays.fill(children, SubImageStateStore.NO_STATE);
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				String[] numbers = line.split("\\s+");
+				if (numbers.length != 3) {
+					throw new AutomatonFormatException("Invalid corpus formatting");
+				}
+				int fromState = checkState(Integer.parseInt(numbers[0]), numberOfStates);
+				int toState = checkState(Integer.parseInt(numbers[1]), numberOfStates);
+				int symbol = Integer.parseInt(numbers[2]);
+				if (symbol < 0 || symbol >= arity || toState >= fromState) {
+					throw new AutomatonFormatException("Invalid transition");
+				}
+				children[fromState * arity + symbol] = toState;
+			}
+
+			// Re-interning in file order must give every state its own number
+			int[] childStates = new int[arity];
+			for (int state = 0; state < numberOfStates; state++) {
+				System.arraycopy(children, state * arity, childStates, 0, arity);
+				if (corpus.store.intern(accepting[state], childStates) != state) {
+					throw new AutomatonFormatException("Invalid corpus formatting");
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new AutomatonFormatException("Invalid corpus formatting", e);
+		}
+		return corpus;
+	}
+
+	/**
+	 * Reads a line that must be present.
+	 *
+	 * @param reader The reader to read from.
+	 * @return The line.
+	 * @throws IOException If the input cannot be read.
+	 * @throws AutomatonFormatException If the end of the input has been
+	 * reached.
+	 */
+	private static String readLine(BufferedReader reader) throws IOException {
+		String line = reader.readLine();
+		if (line == null) {
+			throw new AutomatonFormatException("Invalid corpus formatting");
+		}
+		return line;
+	}
+
+	/**
+	 * Checks that a state number lies within the corpus.
+	 *
+	 * @param state The state number to check.
+	 * @param numberOfStates The number of states of the corpus.
+	 * @return The state number.
+	 * @throws AutomatonFormatException If the state is out of range.
+	 */
+	private static int checkState(int state, int numberOfStates)
+			throws AutomatonFormatException {
+		if (state < 0 || state >= numberOfStates) {
+			throw new AutomatonFormatException("Invalid state " + state);
+		}
+		return state;
+	}
+}
\ No newline at end of file
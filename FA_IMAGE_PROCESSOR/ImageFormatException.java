@@ -0,0 +1,19 @@
+import java.io.IOException;
+
+/**
+ * This exception is thrown when an image cannot be compressed, because it
+ * cannot be decoded, is not square with a side that is a power of 2, or holds
+ * pixels that are neither black nor white.
+ */
+public class ImageFormatException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs an ImageFormatException with the given message.
+	 *
+	 * @param message The detail message.
+	 */
+	public ImageFormatException(String message) {
+		super(message);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,248 @@
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+/**
+ * This class compresses images of any width and height into kd-tree automata
+ * over the binary alphabet, and decompresses them again. The image is placed
+ * in the top left corner of the smallest box whose sides are powers of 2, and
+ * each symbol halves the current block along its longer side, or along x when
+ * it is square, so the axes alternate once the block is square. Along x, 0 is
+ * the left half and 1 the right half, and along y, 0 is the bottom half and 1
+ * the top half, so two symbols make up one quadrant symbol.
+ *
+ * Blocks that lie outside the image are never visited, so both directions
+ * cost time proportional to the area of the image rather than of the box. The
+ * width and height are stored in the header of the automaton text file.
+ */
+public final class KdTreeCodec {
+	private static final int ARITY = 2;
+
+	/**
+	 * Constructs a KdTreeCodec. Not used, as every method is static.
+	 */
+	private KdTreeCodec() {
+	}
+
+	/**
+	 * Compresses an image into a kd-tree automaton.
+	 *
+	 * @param bitmap The image, of any size.
+	 * @return The automaton, whose start state is the whole image.
+	 */
+	public static Automaton compress(PackedBitmap bitmap) {
+		SubImageStateStore store = new SubImageStateStore(ARITY);
+		int root = intern(store, store.blackState(), bitmap, 0, 0,
+				bitsFor(bitmap.getWidth()), bitsFor(bitmap.getHeight()));
+		return toAutomaton(store, root, bitmap.getWidth(), bitmap.getHeight());
+	}
+
+	/**
+	 * Compresses an image file into a kd-tree automaton text file.
+	 *
+	 * @param input The image file, in PNG, PBM or raw format.
+	 * @param output The automaton text file to write.
+	 * @throws IOException If a file cannot be read or written.
+	 * @throws ImageFormatException If the input is not a black and white
+	 * image.
+	 */
+	public static void compress(Path input, Path output) throws IOException {
+		PackedBitmap bitmap;
+		if (BitmapCodec.isBitmapFile(input.toString())) {
+			bitmap = BitmapCodec.read(input.toFile());
+		} else {
+			BufferedImage image = ImageIO.read(input.toFile());
+			if (image == null) {
+				throw new ImageFormatException("Unsupported image format");
+			}
+			PixelScanner.Result scan = PixelScanner.getInstance().scan(image);
+			if (!scan.isBlackAndWhite()) {
+				throw new ImageFormatException("Image is not black and white");
+			}
+			bitmap = scan.getBitmap();
+		}
+
+		Automaton automaton = compress(bitmap);
+		try (Writer writer = Files.newBufferedWriter(output)) {
+			automaton.write(writer);
+		}
+	}
+
+	/**
+	 * Decompresses a kd-tree automaton into an image of its stored size.
+	 *
+	 * @param automaton The kd-tree automaton.
+	 * @return The image.
+	 * @throws IllegalArgumentException If the automaton is not a kd-tree
+	 * automaton or accepts a word longer than its image is deep.
+	 */
+	public static PackedBitmap decompress(Automaton automaton) {
+		if (!automaton.isKdTree()) {
+			throw new IllegalArgumentException("Not a kd-tree automaton");
+		}
+		int width = automaton.getWidth();
+		int height = automaton.getHeight();
+		int depth = bitsFor(width) + bitsFor(height);
+		PackedBitmap bitmap = new PackedBitmap(width, height);
+
+		for (int[] word : new AcceptedWords(automaton, depth + 1, new int[0])) {
+			if (word.length > depth) {
+				throw new IllegalArgumentException("Word longer than the image depth");
+			}
+			int x = 0;
+			int y = 0;
+			int xBits = bitsFor(width);
+			int yBits = bitsFor(height);
+			for (int symbol : word) {
+				if (xBits >= yBits) {
+					xBits--;
+					x += symbol << xBits;
+				} else {
+					// The top half comes first in the image
+					yBits--;
+					y += (1 - symbol) << yBits;
+				}
+			}
+
+			// Blocks on the edge of the box are cut down to the image
+			if (x < width && y < height) {
+				bitmap.fillBlack(x, y, Math.min(1 << xBits, width - x),
+						Math.min(1 << yBits, height - y));
+			}
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Decompresses a kd-tree automaton text file into an image file.
+	 *
+	 * @param input The automaton text file.
+	 * @param output The image file to write, as PBM or raw bits when the
+	 * extension is .pbm or .raw and as PNG otherwise.
+	 * @throws IOException If a file cannot be read or written.
+	 * @throws AutomatonFormatException If the input is badly formatted.
+	 */
+	public static void decompress(Path input, Path output) throws IOException {
+		PackedBitmap bitmap = decompress(Automaton.read(input.toFile()));
+		if (BitmapCodec.isBitmapFile(output.toString())) {
+			BitmapCodec.write(bitmap, output.toFile());
+		} else if (!ImageIO.write(BilevelImage.toBufferedImage(bitmap), "png",
+				output.toFile())) {
+			throw new IOException("Error writing image to file");
+		}
+	}
+
+	/**
+	 * Returns the number of halvings that bring a side down to one pixel.
+	 *
+	 * @param side The side length.
+	 * @return The base 2 logarithm of the side, rounded up.
+	 */
+	private static int bitsFor(int side) {
+		return 32 - Integer.numberOfLeadingZeros(side - 1);
+	}
+
+	/**
+	 * Interns a block of the box and all its sub-blocks, bottom-up.
+	 *
+	 * @param store The store to intern the blocks into.
+	 * @param black The black state of the store.
+	 * @param bitmap The image.
+	 * @param x The x-coordinate of the top left corner of the block.
+	 * @param y The y-coordinate of the top left corner of the block.
+	 * @param xBits The base 2 logarithm of the width of the block.
+	 * @param yBits The base 2 logarithm of the height of the block.
+	 * @return The state of the block, or NO_STATE if it is white or outside the
+	 * image.
+	 */
+	private static int intern(SubImageStateStore store, int black, PackedBitmap bitmap, int x,
+			int y, int xBits, int yBits) {
+		if (x >= bitmap.getWidth() || y >= bitmap.getHeight()) {
+			return SubImageStateStore.NO_STATE;
+		}
+		if (xBits == 0 && yBits == 0) {
+			return bitmap.isBlack(x, y) ? black : SubImageStateStore.NO_STATE;
+		}
+
+		int[] childStates = new int[ARITY];
+		if (xBits >= yBits) {
+			childStates[0] = intern(store, black, bitmap, x, y, xBits - 1, yBits);
+			childStates[1] = intern(store, black, bitmap, x + (1 << (xBits - 1)), y, xBits - 1,
+					yBits);
+		} else {
+			childStates[0] = intern(store, black, bitmap, x, y + (1 << (yBits - 1)), xBits,
+					yBits - 1);
+			childStates[1] = intern(store, black, bitmap, x, y, xBits, yBits - 1);
+		}
+
+		// Blocks reaching outside the image are never black, so a block with
+		// two black halves lies inside it
+		if (childStates[0] == black && childStates[1] == black) {
+			return black;
+		}
+		return store.intern(false, childStates);
+	}
+
+	/**
+	 * Numbers the states reachable from the root breadth-first, the root
+	 * being state 0.
+	 *
+	 * @param store The store holding the states.
+	 * @param root The state of the whole image.
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @return The automaton.
+	 */
+	private static Automaton toAutomaton(SubImageStateStore store, int root, int width,
+			int height) {
+		if (root == SubImageStateStore.NO_STATE) {
+			return new Automaton(1, new boolean[1], new int[0], new int[0], new int[0], 0, width,
+					height);
+		}
+
+		int[] number = new int[store.size()];
+		Arrays.fill(number, SubImageStateStore.NO_STATE);
+		boolean[] acceptStates = new boolean[store.size()];
+		int[] fromStates = new int[16];
+		int[] toStates = new int[16];
+		int[] symbols = new int[16];
+		int count = 0;
+		int numberOfStates = 0;
+
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		number[root] = numberOfStates++;
+		queue.add(root);
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			acceptStates[number[state]] = store.isAccepting(state);
+
+			for (int symbol = 0; symbol < ARITY; symbol++) {
+				int child = store.getChild(state, symbol);
+				if (child == SubImageStateStore.NO_STATE) {
+					continue;
+				}
+				if (number[child] == SubImageStateStore.NO_STATE) {
+					number[child] = numberOfStates++;
+					queue.add(child);
+				}
+
+				if (count == fromStates.length) {
+					fromStates = Arrays.copyOf(fromStates, count * 2);
+					toStates = Arrays.copyOf(toStates, count * 2);
+					symbols = Arrays.copyOf(symbols, count * 2);
+				}
+				fromStates[count] = number[state];
+				toStates[count] = number[child];
+				symbols[count++] = symbol;
+			}
+		}
+		return new Automaton(numberOfStates, acceptStates, fromStates, toStates, symbols, count,
+				width, height);
+	}
+}
\ No newline at end of file
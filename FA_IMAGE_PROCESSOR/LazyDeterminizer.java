@@ -0,0 +1,297 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class determinizes a multi-resolution automaton on the fly. Each state
+ * of the deterministic automaton is a set of states of the original one, and
+ * is expanded the first time it is reached, so every distinct set is worked
+ * out once instead of once per path leading to it.
+ *
+ * Expanded states are kept in a least recently used cache of bounded size. A
+ * state only refers to its successors by their state sets, so an evicted
+ * state is simply expanded again when it is reached next. Instances are not
+ * thread-safe; use one per decompression.
+ */
+public final class LazyDeterminizer {
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private final Automaton automaton;
+	private final Map<StateSet, State> cache;
+	private int expansions;
+
+	/**
+	 * Constructs a LazyDeterminizer.
+	 *
+	 * @param automaton The automaton to determinize, whose start state is 0.
+	 * @param capacity The maximum number of expanded states kept in the cache.
+	 * @throws IllegalArgumentException If the capacity is not positive or the
+	 * automaton is a kd-tree automaton.
+	 */
+	public LazyDeterminizer(Automaton automaton, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid cache capacity " + capacity);
+		}
+		if (automaton.isKdTree()) {
+			throw new IllegalArgumentException("Not a quadtree automaton");
+		}
+		this.automaton = automaton;
+		this.cache = new LinkedHashMap<StateSet, State>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<StateSet, State> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * The main entry point for writing a determinized automaton.
+	 *
+	 * @param args The automaton text file. The deterministic automaton is
+	 * written to out/<name>_det.txt.
+	 */
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.err.println("Input Error - Invalid number of arguments");
+			System.exit(0);
+		}
+
+		try {
+			File inputFile = new File(args[0]);
+			Automaton deterministic = new LazyDeterminizer(Automaton.read(inputFile),
+					DEFAULT_CAPACITY).toAutomaton();
+			try (Writer writer = new FileWriter(
+					"out/" + inputFile.getName().replace(".txt", "_det.txt"))) {
+				deterministic.write(writer);
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * Returns the start state, the set holding state 0.
+	 *
+	 * @return The start state.
+	 */
+	public State getStartState() {
+		return intern(new int[] { 0 });
+	}
+
+	/**
+	 * Returns the state reached from a state on a symbol.
+	 *
+	 * @param state The current state.
+	 * @param symbol The quadrant symbol.
+	 * @return The next state, or null if no transition leaves the set on the
+	 * symbol.
+	 */
+	public State getNextState(State state, int symbol) {
+		int[] successor = state.successors[symbol];
+		return successor == null ? null : intern(successor);
+	}
+
+	/**
+	 * Returns the number of state expansions so far, counting states that were
+	 * expanded again after being evicted.
+	 *
+	 * @return The number of expansions.
+	 */
+	public int getExpansions() {
+		return expansions;
+	}
+
+	/**
+	 * Determinizes the whole reachable part of the automaton. Unlike the lazy
+	 * traversal, this numbers every reachable state set, so its size is not
+	 * bounded by the cache capacity.
+	 *
+	 * @return The deterministic automaton, whose start state is 0.
+	 */
+	public Automaton toAutomaton() {
+		Map<StateSet, Integer> numbers = new HashMap<>();
+		ArrayDeque<State> queue = new ArrayDeque<>();
+		State start = getStartState();
+		numbers.put(new StateSet(start.states), 0);
+		queue.add(start);
+
+		boolean[] acceptStates = new boolean[16];
+		int[] fromStates = new int[16];
+		int[] toStates = new int[16];
+		int[] symbols = new int[16];
+		int count = 0;
+
+		// Breadth-first numbering, so states are numbered as they are found
+		for (int from = 0; !queue.isEmpty(); from++) {
+			State state = queue.poll();
+			if (from == acceptStates.length) {
+				acceptStates = Arrays.copyOf(acceptStates, from * 2);
+			}
+			acceptStates[from] = state.accepting;
+
+			for (int symbol = 0; symbol < Automaton.ALPHABET_SIZE; symbol++) {
+				if (state.successors[symbol] == null) {
+					continue;
+				}
+				StateSet key = new StateSet(state.successors[symbol]);
+				Integer to = numbers.get(key);
+				if (to == null) {
+					to = numbers.size();
+					numbers.put(key, to);
+					queue.add(getNextState(state, symbol));
+				}
+
+				if (count == fromStates.length) {
+					fromStates = Arrays.copyOf(fromStates, count * 2);
+					toStates = Arrays.copyOf(toStates, count * 2);
+					symbols = Arrays.copyOf(symbols, count * 2);
+				}
+				fromStates[count] = from;
+				toStates[count] = to;
+				symbols[count++] = symbol;
+			}
+		}
+		return new Automaton(numbers.size(), acceptStates, fromStates, toStates, symbols,
+				count);
+	}
+
+	/**
+	 * Returns the cached state for a set, expanding it if it is not cached.
+	 *
+	 * @param states The sorted set of original states.
+	 * @return The state.
+	 */
+	private State intern(int[] states) {
+		StateSet key = new StateSet(states);
+		State state = cache.get(key);
+		if (state == null) {
+			state = expand(states);
+			cache.put(key, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Works out whether a set accepts and which set it moves to on each
+	 * symbol.
+	 *
+	 * @param states The sorted set of original states.
+	 * @return The expanded state.
+	 */
+	private State expand(int[] states) {
+		expansions++;
+		boolean accepting = false;
+		int[][] targets = new int[Automaton.ALPHABET_SIZE][];
+		int[] counts = new int[Automaton.ALPHABET_SIZE];
+
+		for (int state : states) {
+			accepting |= automaton.isAcceptState(state);
+			for (int i = automaton.getTransitionStart(state); i < automaton
+					.getTransitionEnd(state); i++) {
+				int symbol = automaton.getTransitionSymbol(i);
+				if (targets[symbol] == null) {
+					targets[symbol] = new int[4];
+				} else if (counts[symbol] == targets[symbol].length) {
+					targets[symbol] = Arrays.copyOf(targets[symbol], counts[symbol] * 2);
+				}
+				targets[symbol][counts[symbol]++] = automaton.getTransitionTarget(i);
+			}
+		}
+
+		// Successor sets are kept sorted and free of duplicates, so equal sets
+		// have equal keys
+		for (int symbol = 0; symbol < Automaton.ALPHABET_SIZE; symbol++) {
+			if (targets[symbol] != null) {
+				int[] successor = targets[symbol];
+				Arrays.sort(successor, 0, counts[symbol]);
+				int size = 0;
+				for (int i = 0; i < counts[symbol]; i++) {
+					if (size == 0 || successor[size - 1] != successor[i]) {
+						successor[size++] = successor[i];
+					}
+				}
+				targets[symbol] = Arrays.copyOf(successor, size);
+			}
+		}
+		return new State(states, accepting, targets);
+	}
+
+	/**
+	 * This class is a state of the deterministic automaton: a set of states
+	 * of the original automaton.
+	 */
+	public static final class State {
+		private final int[] states;
+		private final boolean accepting;
+		private final int[][] successors;
+
+		/**
+		 * Constructs a State.
+		 *
+		 * @param states The sorted set of original states.
+		 * @param accepting Whether the set holds an accept state.
+		 * @param successors The sorted successor set per symbol, or null where
+		 * there is none.
+		 */
+		private State(int[] states, boolean accepting, int[][] successors) {
+			this.states = states;
+			this.accepting = accepting;
+			this.successors = successors;
+		}
+
+		/**
+		 * Returns whether the set holds an accept state.
+		 *
+		 * @return true if the state is accepting, false otherwise.
+		 */
+		public boolean isAccepting() {
+			return accepting;
+		}
+
+		/**
+		 * Returns the original states in the set.
+		 *
+		 * @return A new sorted array of the original states.
+		 */
+		public int[] getStates() {
+			return states.clone();
+		}
+	}
+
+	/**
+	 * This class is a hash key for a sorted set of original states.
+	 */
+	private static final class StateSet {
+		private final int[] states;
+		private final int hash;
+
+		/**
+		 * Constructs a StateSet.
+		 *
+		 * @param states The sorted set of original states.
+		 */
+		StateSet(int[] states) {
+			this.states = states;
+			this.hash = Arrays.hashCode(states);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof StateSet && Arrays.equals(states, ((StateSet) other).states);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
\ No newline at end of file
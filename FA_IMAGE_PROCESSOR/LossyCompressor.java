@@ -0,0 +1,277 @@
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class compresses a black and white image with a bounded pixel error.
+ * A quadrant is taken as black when its share of black pixels reaches the
+ * black ratio, and as white when its share of white pixels does, so noisy
+ * quadrants stop being subdivided. Optionally, a new sub-image is replaced
+ * by an existing state of the same size when that state differs from the
+ * original pixels of the quadrant in at most the Hamming budget's share of
+ * them. Since every merge is measured against the original image rather than
+ * against states that were merged already, errors do not build up from level
+ * to level, and the error rate of the whole image is at most the larger of
+ * the Hamming budget and 1 - black ratio. The resulting error rate is
+ * measured against the original image.
+ */
+public class LossyCompressor {
+	private static final int COVERAGE_BUCKETS = 64;
+	private static final int MAX_CANDIDATES = 16;
+
+	private final SubImageStateStore store;
+	private final double blackRatio;
+	private final double hammingBudget;
+	private final Map<Long, List<Integer>> mergeCandidates;
+	private final Map<Integer, Double> coverage;
+	private int[] blackCounts;
+	private int imageSize;
+	private int root;
+	private long errorPixels;
+
+	/**
+	 * Constructs a LossyCompressor.
+	 *
+	 * @param blackRatio The share of black pixels, between 0.5 and 1, from
+	 * which a quadrant is treated as black. 1 gives lossless quadrants.
+	 * @param hammingBudget The share of pixels, between 0 and 1, in which two
+	 * sub-images of the same size may differ and still be merged. 0 disables
+	 * merging.
+	 * @throws IllegalArgumentException If a parameter is out of range.
+	 */
+	public LossyCompressor(double blackRatio, double hammingBudget) {
+		if (!(blackRatio >= 0.5 && blackRatio <= 1)
+				|| !(hammingBudget >= 0 && hammingBudget <= 1)) {
+			throw new IllegalArgumentException("Invalid lossy parameters");
+		}
+		this.store = new SubImageStateStore(Automaton.ALPHABET_SIZE);
+		this.blackRatio = blackRatio;
+		this.hammingBudget = hammingBudget;
+		this.mergeCandidates = new HashMap<>();
+		this.coverage = new HashMap<>();
+	}
+
+	/**
+	 * Compresses an image and measures the resulting error.
+	 *
+	 * @param image A square black and white image whose side is a power of 2.
+	 * @return The root state of the compressed image.
+	 */
+	public int compress(BufferedImage image) {
+		return compress(PixelScanner.getInstance().scan(image).getBitmap());
+	}
+
+	/**
+	 * Compresses a packed 1-bit image and measures the resulting error.
+	 *
+	 * @param bitmap A square image whose side is a power of 2.
+	 * @return The root state of the compressed image.
+	 */
+	public int compress(PackedBitmap bitmap) {
+		imageSize = bitmap.getWidth();
+
+		int stride = imageSize + 1;
+		blackCounts = new int[stride * stride];
+		for (int y = 0; y < imageSize; y++) {
+			int rowCount = 0;
+			for (int x = 0; x < imageSize; x++) {
+				if (bitmap.isBlack(x, y)) {
+					rowCount++;
+				}
+				blackCounts[(y + 1) * stride + x + 1] = blackCounts[y * stride + x + 1] + rowCount;
+			}
+		}
+		return compressCounted();
+	}
+
+	/**
+	 * Builds the states from the summed-area table and measures the error.
+	 *
+	 * @return The root state of the compressed image.
+	 */
+	private int compressCounted() {
+		root = buildQuadrant(0, 0, imageSize);
+		errorPixels = countErrors(root, 0, 0, imageSize, Long.MAX_VALUE);
+		return root;
+	}
+
+	/**
+	 * Returns the share of pixels that differ between the original image and
+	 * the compressed one.
+	 *
+	 * @return The error rate, between 0 and 1.
+	 */
+	public double getErrorRate() {
+		return (double) errorPixels / ((long) imageSize * imageSize);
+	}
+
+	/**
+	 * Writes the compressed image in the automaton text file format. An
+	 * entirely white image is written as a single state that is not accepting.
+	 *
+	 * @param output The writer to write the automaton to.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	public void writeAutomaton(Writer output) throws IOException {
+		store.writeAutomaton(output, root);
+	}
+
+	/**
+	 * Recursively builds the state of a quadrant.
+	 *
+	 * @param x The x-coordinate of the top-left corner of the quadrant.
+	 * @param y The y-coordinate of the top-left corner of the quadrant.
+	 * @param quadrantSize The size of the quadrant.
+	 * @return The state of the quadrant, or NO_STATE if it is white.
+	 */
+	private int buildQuadrant(int x, int y, int quadrantSize) {
+		long area = (long) quadrantSize * quadrantSize;
+		long black = countBlack(x, y, quadrantSize);
+
+		if (black >= blackRatio * area) {
+			return store.blackState();
+		} else if (area - black >= blackRatio * area) {
+			return SubImageStateStore.NO_STATE;
+		}
+
+		int half = quadrantSize / 2;
+		int[] quadrant = { buildQuadrant(x, y + half, half), buildQuadrant(x, y, half),
+				buildQuadrant(x + half, y + half, half), buildQuadrant(x + half, y, half) };
+		int state = store.internQuadrant(quadrant, store.blackState());
+
+		if (hammingBudget > 0 && !store.isAccepting(state)) {
+			state = mergeWithSimilar(state, x, y, quadrantSize);
+		}
+		return state;
+	}
+
+	/**
+	 * Looks for an earlier state of the same size that differs from the
+	 * original pixels of the quadrant in at most the Hamming budget, and
+	 * returns it instead. Otherwise the state becomes a candidate for later
+	 * merges.
+	 *
+	 * @param state The newly built state.
+	 * @param x The x-coordinate of the top-left corner of the quadrant.
+	 * @param y The y-coordinate of the top-left corner of the quadrant.
+	 * @param quadrantSize The size of its quadrant.
+	 * @return The state to use for the quadrant.
+	 */
+	private int mergeWithSimilar(int state, int x, int y, int quadrantSize) {
+		long area = (long) quadrantSize * quadrantSize;
+		long limit = (long) (hammingBudget * area);
+		int bucket = (int) ((double) countBlack(x, y, quadrantSize) / area * COVERAGE_BUCKETS);
+		// One more bucket, as both coverages are rounded down to their bucket
+		int reach = (int) Math.ceil(hammingBudget * COVERAGE_BUCKETS) + 1;
+
+		// Coverages further apart than the budget cannot be within it
+		for (int b = Math.max(0, bucket - reach); b <= Math.min(COVERAGE_BUCKETS,
+				bucket + reach); b++) {
+			List<Integer> candidates = mergeCandidates.get(bucketKey(quadrantSize, b));
+			if (candidates == null) {
+				continue;
+			}
+			for (int candidate : candidates) {
+				if (candidate == state) {
+					return state;
+				}
+				if (countErrors(candidate, x, y, quadrantSize, limit) <= limit) {
+					return candidate;
+				}
+			}
+		}
+
+		List<Integer> candidates = mergeCandidates.computeIfAbsent(
+				bucketKey(quadrantSize, (int) (coverageOf(state) * COVERAGE_BUCKETS)),
+				key -> new ArrayList<>());
+		if (candidates.size() < MAX_CANDIDATES) {
+			candidates.add(state);
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the share of black area of a state's sub-image.
+	 *
+	 * @param state The state, or NO_STATE.
+	 * @return The black coverage, between 0 and 1.
+	 */
+	private double coverageOf(int state) {
+		if (state == SubImageStateStore.NO_STATE) {
+			return 0;
+		} else if (store.isAccepting(state)) {
+			return 1;
+		}
+
+		Double known = coverage.get(state);
+		if (known != null) {
+			return known;
+		}
+		double sum = 0;
+		for (int symbol = 0; symbol < store.getArity(); symbol++) {
+			sum += coverageOf(store.getChild(state, symbol));
+		}
+		coverage.put(state, sum / store.getArity());
+		return sum / store.getArity();
+	}
+
+	/**
+	 * Counts the pixels of a quadrant where a state's sub-image differs from
+	 * the original image, stopping early once the limit is exceeded.
+	 *
+	 * @param state The state drawn in the quadrant, or NO_STATE.
+	 * @param x The x-coordinate of the top-left corner of the quadrant.
+	 * @param y The y-coordinate of the top-left corner of the quadrant.
+	 * @param quadrantSize The size of the quadrant.
+	 * @param limit The count beyond which the exact value is not needed.
+	 * @return The number of differing pixels, or a value above the limit.
+	 */
+	private long countErrors(int state, int x, int y, int quadrantSize, long limit) {
+		if (state == SubImageStateStore.NO_STATE) {
+			return countBlack(x, y, quadrantSize);
+		} else if (store.isAccepting(state)) {
+			return (long) quadrantSize * quadrantSize - countBlack(x, y, quadrantSize);
+		}
+
+		int half = quadrantSize / 2;
+		int[] xs = { x, x, x + half, x + half };
+		int[] ys = { y + half, y, y + half, y };
+		long total = 0;
+		for (int symbol = 0; symbol < store.getArity() && total <= limit; symbol++) {
+			total += countErrors(store.getChild(state, symbol), xs[symbol], ys[symbol], half,
+					limit - total);
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the number of black pixels in a quadrant of the original image.
+	 *
+	 * @param x The x-coordinate of the top-left corner of the quadrant.
+	 * @param y The y-coordinate of the top-left corner of the quadrant.
+	 * @param quadrantSize The size of the quadrant.
+	 * @return The number of black pixels.
+	 */
+	private long countBlack(int x, int y, int quadrantSize) {
+		int stride = imageSize + 1;
+		int x2 = x + quadrantSize;
+		int y2 = y + quadrantSize;
+		return (long) blackCounts[y2 * stride + x2] - blackCounts[y * stride + x2]
+				- blackCounts[y2 * stride + x] + blackCounts[y * stride + x];
+	}
+
+	/**
+	 * Returns the key of a merge candidate bucket.
+	 *
+	 * @param quadrantSize The size of the candidates' quadrants.
+	 * @param bucket The coverage bucket.
+	 * @return The bucket key.
+	 */
+	private static long bucketKey(int quadrantSize, int bucket) {
+		return ((long) quadrantSize << 32) | bucket;
+	}
+}
\ No newline at end of file
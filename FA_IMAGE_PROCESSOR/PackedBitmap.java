@@ -0,0 +1,209 @@
+import java.nio.ByteBuffer;
+
+/**
+ * This class is a black and white image stored one bit per pixel, in the row
+ * layout of binary PBM files: each row starts on a byte boundary, the most
+ * significant bit of a byte is the leftmost pixel and a set bit is black. The
+ * bits may live in a memory-mapped file, so images can be compressed without
+ * ever being unpacked.
+ */
+public final class PackedBitmap {
+	private final int width;
+	private final int height;
+	private final int rowBytes;
+	private final ByteBuffer bits;
+
+	/**
+	 * Constructs an entirely white PackedBitmap.
+	 *
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 */
+	public PackedBitmap(int width, int height) {
+		this(width, height, ByteBuffer.allocate(height * ((width + 7) / 8)));
+	}
+
+	/**
+	 * Constructs a PackedBitmap over existing packed rows.
+	 *
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @param bits The packed rows, starting at the buffer's position. Bytes
+	 * past the last row are ignored.
+	 * @throws IllegalArgumentException If the buffer is too small.
+	 */
+	public PackedBitmap(int width, int height, ByteBuffer bits) {
+		this.width = width;
+		this.height = height;
+		this.rowBytes = (width + 7) / 8;
+		if (bits.remaining() < (long) rowBytes * height) {
+			throw new IllegalArgumentException("Bitmap data is truncated");
+		}
+		this.bits = bits.slice(bits.position(), rowBytes * height);
+	}
+
+	/**
+	 * Returns the width of the image.
+	 *
+	 * @return The width.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image.
+	 *
+	 * @return The height.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the number of bytes of each packed row.
+	 *
+	 * @return The row length in bytes.
+	 */
+	public int getRowBytes() {
+		return rowBytes;
+	}
+
+	/**
+	 * Returns whether the packed rows cannot be written through this bitmap,
+	 * as for memory-mapped files opened for reading.
+	 *
+	 * @return true if the backing buffer is read-only.
+	 */
+	public boolean isReadOnly() {
+		return bits.isReadOnly();
+	}
+
+	/**
+	 * Returns a read-only view of the packed rows.
+	 *
+	 * @return The packed rows, positioned at the first row and ending after
+	 * the last.
+	 */
+	public ByteBuffer getBits() {
+		return bits.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns whether a pixel is black.
+	 *
+	 * @param x The x-coordinate of the pixel.
+	 * @param y The y-coordinate of the pixel.
+	 * @return true if the pixel is black, false otherwise.
+	 */
+	public boolean isBlack(int x, int y) {
+		return (bits.get(y * rowBytes + (x >> 3)) & (0x80 >>> (x & 7))) != 0;
+	}
+
+	/**
+	 * Returns whether every pixel of a rectangle is black. Whole bytes are
+	 * compared at once.
+	 *
+	 * @param x The x-coordinate of the top-left corner of the rectangle.
+	 * @param y The y-coordinate of the top-left corner of the rectangle.
+	 * @param w The width of the rectangle.
+	 * @param h The height of the rectangle.
+	 * @return true if the rectangle is entirely black, false otherwise.
+	 */
+	public boolean isRegionBlack(int x, int y, int w, int h) {
+		int firstByte = x >> 3;
+		int lastByte = (x + w - 1) >> 3;
+		int firstMask = 0xFF >>> (x & 7);
+		int lastMask = (0xFF << (7 - ((x + w - 1) & 7))) & 0xFF;
+
+		for (int row = y; row < y + h; row++) {
+			int offset = row * rowBytes;
+			if (firstByte == lastByte) {
+				int mask = firstMask & lastMask;
+				if ((bits.get(offset + firstByte) & mask) != mask) {
+					return false;
+				}
+				continue;
+			}
+			if ((bits.get(offset + firstByte) & firstMask) != firstMask
+					|| (bits.get(offset + lastByte) & lastMask) != lastMask) {
+				return false;
+			}
+			for (int b = firstByte + 1; b < lastByte; b++) {
+				if (bits.get(offset + b) != (byte) 0xFF) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the black pixels of a rectangle.
+	 *
+	 * @param x The x-coordinate of the top-left corner of the rectangle.
+	 * @param y The y-coordinate of the top-left corner of the rectangle.
+	 * @param w The width of the rectangle.
+	 * @param h The height of the rectangle.
+	 * @return The number of black pixels.
+	 */
+	public int countBlack(int x, int y, int w, int h) {
+		int firstByte = x >> 3;
+		int lastByte = (x + w - 1) >> 3;
+		int firstMask = 0xFF >>> (x & 7);
+		int lastMask = (0xFF << (7 - ((x + w - 1) & 7))) & 0xFF;
+		int count = 0;
+
+		for (int row = y; row < y + h; row++) {
+			int offset = row * rowBytes;
+			if (firstByte == lastByte) {
+				count += Integer.bitCount(bits.get(offset + firstByte) & firstMask & lastMask);
+				continue;
+			}
+			count += Integer.bitCount(bits.get(offset + firstByte) & firstMask);
+			count += Integer.bitCount(bits.get(offset + lastByte) & lastMask);
+			for (int b = firstByte + 1; b < lastByte; b++) {
+				count += Integer.bitCount(bits.get(offset + b) & 0xFF);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Sets every pixel of a rectangle to black.
+	 *
+	 * @param x The x-coordinate of the top-left corner of the rectangle.
+	 * @param y The y-coordinate of the top-left corner of the rectangle.
+	 * @param w The width of the rectangle.
+	 * @param h The height of the rectangle.
+	 */
+	public void fillBlack(int x, int y, int w, int h) {
+		int firstByte = x >> 3;
+		int lastByte = (x + w - 1) >> 3;
+		int firstMask = 0xFF >>> (x & 7);
+		int lastMask = (0xFF << (7 - ((x + w - 1) & 7))) & 0xFF;
+
+		for (int row = y; row < y + h; row++) {
+			int offset = row * rowBytes;
+			if (firstByte == lastByte) {
+				setBits(offset + firstByte, firstMask & lastMask);
+				continue;
+			}
+			setBits(offset + firstByte, firstMask);
+			setBits(offset + lastByte, lastMask);
+			for (int b = firstByte + 1; b < lastByte; b++) {
+				bits.put(offset + b, (byte) 0xFF);
+			}
+		}
+	}
+
+	/**
+	 * Sets the masked bits of one byte.
+	 *
+	 * @param index The index of the byte.
+	 * @param mask The bits to set.
+	 */
+	private void setBits(int index, int mask) {
+		bits.put(index, (byte) (bits.get(index) | mask));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+
+/**
+ * This class classifies the pixels of an image in a single pass: it packs
+ * them into a PackedBitmap and checks that every pixel is pure black or
+ * white. Rows are read in bulk, straight from the int[] backing TYPE_INT_RGB
+ * and TYPE_INT_ARGB images.
+ *
+ * Any pixel that is not white counts as black, as in the rest of the
+ * compressor. getInstance returns the VectorPixelScanner subclass when the
+ * jdk.incubator.vector module is available, and this scalar implementation
+ * otherwise.
+ */
+public class PixelScanner {
+	private static final PixelScanner INSTANCE = create();
+
+	/**
+	 * Constructs a scalar PixelScanner.
+	 */
+	PixelScanner() {
+	}
+
+	/**
+	 * Returns the fastest scanner available. The vector scanner can be turned
+	 * off with -Dfa.vector=false.
+	 *
+	 * @return The shared scanner, which is safe for concurrent use.
+	 */
+	public static PixelScanner getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Creates the vector scanner when the JVM runs with the
+	 * jdk.incubator.vector module, and the scalar scanner otherwise.
+	 *
+	 * @return The new scanner.
+	 */
+	private static PixelScanner create() {
+		if (Boolean.parseBoolean(System.getProperty("fa.vector", "true"))) {
+			try {
+				return (PixelScanner) Class.forName("VectorPixelScanner")
+						.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// The module is missing or the class was not compiled
+			}
+		}
+		return new PixelScanner();
+	}
+
+	/**
+	 * Classifies the pixels of an image.
+	 *
+	 * @param image The image to scan.
+	 * @return The packed pixels and whether the image is black and white.
+	 */
+	public final Result scan(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int rowBytes = (width + 7) / 8;
+		byte[] packed = new byte[rowBytes * height];
+		int impurePixels = 0;
+
+		// Integer rasters are read in place, other images are converted a row
+		// at a time
+		int[] pixels;
+		int offset;
+		int stride;
+		WritableRaster raster = image.getRaster();
+		if ((image.getType() == BufferedImage.TYPE_INT_RGB
+				|| image.getType() == BufferedImage.TYPE_INT_ARGB)
+				&& raster.getDataBuffer() instanceof DataBufferInt
+				&& raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+			pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+			stride = ((SinglePixelPackedSampleModel) raster.getSampleModel())
+					.getScanlineStride();
+			offset = raster.getDataBuffer().getOffset()
+					- raster.getSampleModelTranslateY() * stride
+					- raster.getSampleModelTranslateX();
+		} else {
+			pixels = new int[width];
+			stride = 0;
+			offset = 0;
+		}
+
+		for (int y = 0; y < height; y++) {
+			if (stride == 0) {
+				image.getRGB(0, y, width, 1, pixels, 0, width);
+			}
+			impurePixels += packRange(pixels, offset + y * stride, 0, width, packed,
+					y * rowBytes);
+		}
+		return new Result(new PackedBitmap(width, height, ByteBuffer.wrap(packed)),
+				impurePixels == 0);
+	}
+
+	/**
+	 * Packs a range of one row. Whole rows are scanned from x = 0, so only a
+	 * subclass finishing off a row passes a later start.
+	 *
+	 * @param pixels The ARGB pixels.
+	 * @param rowOffset The index of the row's first pixel in pixels.
+	 * @param from The first x-coordinate of the range.
+	 * @param to The x-coordinate one past the end of the range.
+	 * @param packed The packed rows, which are initially white.
+	 * @param packedOffset The index of the row's first byte in packed.
+	 * @return The number of pixels in the range that are neither black nor
+	 * white.
+	 */
+	int packRange(int[] pixels, int rowOffset, int from, int to, byte[] packed,
+			int packedOffset) {
+		int impure = 0;
+		for (int x = from; x < to; x++) {
+			int color = pixels[rowOffset + x] & 0xFFFFFF;
+			if (color != 0xFFFFFF) {
+				packed[packedOffset + (x >> 3)] |= 0x80 >>> (x & 7);
+				if (color != 0) {
+					impure++;
+				}
+			}
+		}
+		return impure;
+	}
+
+	/**
+	 * This class holds the outcome of a scan.
+	 */
+	public static final class Result {
+		private final PackedBitmap bitmap;
+		private final boolean blackAndWhite;
+
+		/**
+		 * Constructs a Result.
+		 *
+		 * @param bitmap The packed pixels.
+		 * @param blackAndWhite Whether every pixel is pure black or white.
+		 */
+		Result(PackedBitmap bitmap, boolean blackAndWhite) {
+			this.bitmap = bitmap;
+			this.blackAndWhite = blackAndWhite;
+		}
+
+		/**
+		 * Returns the packed pixels, in which every non-white pixel is black.
+		 *
+		 * @return The packed pixels.
+		 */
+		public PackedBitmap getBitmap() {
+			return bitmap;
+		}
+
+		/**
+		 * Returns whether every pixel is pure black or white.
+		 *
+		 * @return true if the image is black and white, false otherwise.
+		 */
+		public boolean isBlackAndWhite() {
+			return blackAndWhite;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,288 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * This class reads an automaton in the progressive format written by
+ * ProgressiveWriter one state at a time, and keeps a grayscale approximation
+ * of its image up to date as it goes. Each state is drawn in its dominant
+ * color as soon as its line is read, and the blocks of its transitions are
+ * refined when the lines of their targets arrive, so any prefix of the file
+ * gives a coarse preview and the whole file gives the full image.
+ *
+ * Accept states are drawn as black blocks, and blocks are not refined below
+ * a single pixel. Instances are not thread-safe.
+ */
+public final class ProgressiveReader {
+	private final BufferedReader reader;
+	private final int imageSize;
+	private final int numberOfStates;
+	private final byte[] pixels;
+	private final boolean[] acceptStates;
+	private final int[] grays;
+	private final int[] transitionOffsets;
+	private int[] transitionSymbols;
+	private int[] transitionTargets;
+	private final Map<Integer, ArrayList<int[]>> pendingBlocks;
+	private int statesRead;
+
+	/**
+	 * Constructs a ProgressiveReader and reads the header of the file. The
+	 * reader is not closed.
+	 *
+	 * @param input The reader to read the progressive file from.
+	 * @param imageSize The side length of the image to draw, a power of 2.
+	 * @throws IOException If the input cannot be read.
+	 * @throws AutomatonFormatException If the header is badly formatted.
+	 * @throws IllegalArgumentException If the image size is not a power of 2.
+	 */
+	public ProgressiveReader(Reader input, int imageSize) throws IOException {
+		if (imageSize < 1 || (imageSize & (imageSize - 1)) != 0) {
+			throw new IllegalArgumentException("Invalid image size " + imageSize);
+		}
+		this.reader = new BufferedReader(input);
+		this.imageSize = imageSize;
+
+		String line = reader.readLine();
+		String[] header = line == null ? new String[0] : line.trim().split("\\s+");
+		if (header.length != 2 || !header[0].equals(ProgressiveWriter.HEADER)) {
+			throw new AutomatonFormatException("Invalid progressive formatting");
+		}
+		try {
+			this.numberOfStates = Integer.parseInt(header[1]);
+		} catch (NumberFormatException e) {
+			throw new AutomatonFormatException("Invalid progressive formatting", e);
+		}
+		if (numberOfStates < 1) {
+			throw new AutomatonFormatException("Invalid progressive formatting");
+		}
+
+		this.pixels = new byte[imageSize * imageSize];
+		Arrays.fill(pixels, (byte) 255);
+		this.acceptStates = new boolean[numberOfStates];
+		this.grays = new int[numberOfStates];
+		this.transitionOffsets = new int[numberOfStates + 1];
+		this.transitionSymbols = new int[16];
+		this.transitionTargets = new int[16];
+		this.pendingBlocks = new HashMap<>();
+		this.statesRead = 0;
+
+		// The start state covers the whole image
+		ArrayList<int[]> root = new ArrayList<>();
+		root.add(new int[] { 0, 0, imageSize });
+		pendingBlocks.put(0, root);
+	}
+
+	/**
+	 * The main entry point for previewing a progressive file.
+	 *
+	 * @param args The image size, the number of states to read and the
+	 * progressive file. The preview is written to out/<name>_<states>.png.
+	 */
+	public static void main(String[] args) {
+		if (args.length != 3) {
+			System.err.println("Input Error - Invalid number of arguments");
+			System.exit(0);
+		}
+
+		int imageSize = 0;
+		int states = 0;
+		try {
+			imageSize = Integer.parseInt(args[0]);
+			states = Integer.parseInt(args[1]);
+		} catch (NumberFormatException e) {
+			System.err.println("Input Error - Invalid argument type");
+			System.exit(0);
+		}
+
+		try (Reader input = new FileReader(args[2])) {
+			ProgressiveReader progressive = new ProgressiveReader(input, imageSize);
+			while (progressive.getStatesRead() < states && progressive.readState()) {
+				// Each state refines the preview
+			}
+			String name = new File(args[2]).getName().replace(".txt", "");
+			if (!ImageIO.write(progressive.getImage(), "png",
+					new File("out/" + name + "_" + states + ".png"))) {
+				throw new IOException("Error writing image to file");
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * Returns the number of states of the automaton, from the header.
+	 *
+	 * @return The number of states.
+	 */
+	public int getNumberOfStates() {
+		return numberOfStates;
+	}
+
+	/**
+	 * Returns the number of states read so far.
+	 *
+	 * @return The number of states read.
+	 */
+	public int getStatesRead() {
+		return statesRead;
+	}
+
+	/**
+	 * Reads the next state and refines the image with it.
+	 *
+	 * @return true if a state was read, false if every state was read already.
+	 * @throws IOException If the input cannot be read.
+	 * @throws AutomatonFormatException If the line is badly formatted or the
+	 * file ends early.
+	 */
+	public boolean readState() throws IOException {
+		if (statesRead == numberOfStates) {
+			return false;
+		}
+		String line = reader.readLine();
+		if (line == null) {
+			throw new AutomatonFormatException("Missing state " + statesRead);
+		}
+		String[] numbers = line.trim().split("\\s+");
+		if (numbers.length < 2 || numbers.length % 2 != 0) {
+			throw new AutomatonFormatException("Invalid progressive formatting");
+		}
+
+		int state = statesRead;
+		try {
+			acceptStates[state] = Integer.parseInt(numbers[0]) != 0;
+			grays[state] = Integer.parseInt(numbers[1]);
+			int count = transitionOffsets[state];
+			for (int i = 2; i < numbers.length; i += 2) {
+				int symbol = Integer.parseInt(numbers[i]);
+				int target = Integer.parseInt(numbers[i + 1]);
+				if (symbol < 0 || symbol >= Automaton.ALPHABET_SIZE || target < 0
+						|| target >= numberOfStates) {
+					throw new AutomatonFormatException("Invalid transition");
+				}
+				if (count == transitionSymbols.length) {
+					transitionSymbols = Arrays.copyOf(transitionSymbols, count * 2);
+					transitionTargets = Arrays.copyOf(transitionTargets, count * 2);
+				}
+				transitionSymbols[count] = symbol;
+				transitionTargets[count++] = target;
+			}
+			transitionOffsets[state + 1] = count;
+		} catch (NumberFormatException e) {
+			throw new AutomatonFormatException("Invalid progressive formatting", e);
+		}
+		if (grays[state] < 0 || grays[state] > 255) {
+			throw new AutomatonFormatException("Invalid color");
+		}
+		statesRead++;
+
+		ArrayList<int[]> blocks = pendingBlocks.remove(state);
+		if (blocks != null) {
+			for (int[] block : blocks) {
+				drawBlock(state, block[0], block[1], block[2]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the image as drawn from the states read so far.
+	 *
+	 * @return A new grayscale image.
+	 */
+	public BufferedImage getImage() {
+		BufferedImage image = new BufferedImage(imageSize, imageSize,
+				BufferedImage.TYPE_BYTE_GRAY);
+		image.getRaster().setDataElements(0, 0, imageSize, imageSize, pixels.clone());
+		return image;
+	}
+
+	/**
+	 * Returns the automaton, once every state is read.
+	 *
+	 * @return The automaton, numbered as in the file.
+	 * @throws IllegalStateException If some states are not read yet.
+	 */
+	public Automaton toAutomaton() {
+		if (statesRead < numberOfStates) {
+			throw new IllegalStateException("Only " + statesRead + " of " + numberOfStates
+					+ " states read");
+		}
+		int count = transitionOffsets[numberOfStates];
+		int[] fromStates = new int[count];
+		for (int state = 0; state < numberOfStates; state++) {
+			Arrays.fill(fromStates, transitionOffsets[state], transitionOffsets[state + 1],
+					state);
+		}
+		return new Automaton(numberOfStates, acceptStates.clone(), fromStates,
+				Arrays.copyOf(transitionTargets, count), Arrays.copyOf(transitionSymbols, count),
+				count);
+	}
+
+	/**
+	 * Draws a read state into a block, and refines the block's quadrants with
+	 * the targets already read or leaves them pending until their lines are.
+	 *
+	 * @param state The state, which has been read.
+	 * @param x The x-coordinate of the top left corner of the block.
+	 * @param y The y-coordinate of the top left corner of the block.
+	 * @param size The side length of the block.
+	 */
+	private void drawBlock(int state, int x, int y, int size) {
+		if (acceptStates[state]) {
+			fill(x, y, size, 0);
+			return;
+		}
+		fill(x, y, size, grays[state]);
+		if (size == 1) {
+			return;
+		}
+
+		// Symbols: 0 bottom left, 1 top left, 2 bottom right, 3 top right
+		int half = size / 2;
+		int[] xs = { x, x, x + half, x + half };
+		int[] ys = { y + half, y, y + half, y };
+		boolean[] covered = new boolean[Automaton.ALPHABET_SIZE];
+		for (int i = transitionOffsets[state]; i < transitionOffsets[state + 1]; i++) {
+			int symbol = transitionSymbols[i];
+			int target = transitionTargets[i];
+			covered[symbol] = true;
+			if (target < statesRead) {
+				drawBlock(target, xs[symbol], ys[symbol], half);
+			} else {
+				pendingBlocks.computeIfAbsent(target, key -> new ArrayList<>())
+						.add(new int[] { xs[symbol], ys[symbol], half });
+			}
+		}
+		for (int symbol = 0; symbol < Automaton.ALPHABET_SIZE; symbol++) {
+			if (!covered[symbol]) {
+				fill(xs[symbol], ys[symbol], half, 255);
+			}
+		}
+	}
+
+	/**
+	 * Fills a block of the image with a gray level.
+	 *
+	 * @param x The x-coordinate of the top left corner of the block.
+	 * @param y The y-coordinate of the top left corner of the block.
+	 * @param size The side length of the block.
+	 * @param gray The gray level, from 0 (black) to 255 (white).
+	 */
+	private void fill(int x, int y, int size, int gray) {
+		for (int row = y; row < y + size; row++) {
+			Arrays.fill(pixels, row * imageSize + x, row * imageSize + x + size, (byte) gray);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * This class writes automata in the progressive text format, which a
+ * ProgressiveReader can render from any prefix of the file. The first line is
+ * "progressive" followed by the number of states. Each following line is one
+ * state, numbered breadth-first from the start state so that every state comes
+ * after all states closer to the start, and holds:
+ *
+ * <accept> <gray> <symbol> <target> <symbol> <target> ...
+ *
+ * where accept is 1 for accept states and 0 otherwise, gray is the dominant
+ * color of the state's sub-image from 0 (black) to 255 (white), and each
+ * symbol and target pair is one transition.
+ */
+public final class ProgressiveWriter {
+	public static final String HEADER = "progressive";
+
+	/**
+	 * Constructs a ProgressiveWriter. Not used, as every method is static.
+	 */
+	private ProgressiveWriter() {
+	}
+
+	/**
+	 * The main entry point for converting an automaton text file to the
+	 * progressive format.
+	 *
+	 * @param args The automaton text file. The progressive file is written to
+	 * out/<name>_prog.txt.
+	 */
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.err.println("Input Error - Invalid number of arguments");
+			System.exit(0);
+		}
+
+		try {
+			File inputFile = new File(args[0]);
+			Automaton automaton = Automaton.read(inputFile);
+			try (Writer writer = new FileWriter(
+					"out/" + inputFile.getName().replace(".txt", "_prog.txt"))) {
+				write(automaton, writer);
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * Writes the states of an automaton reachable from its start state in the
+	 * progressive format. The writer is flushed but not closed.
+	 *
+	 * @param automaton The automaton, whose start state is 0.
+	 * @param output The writer to write the automaton to.
+	 * @throws IOException If an error occurs while writing.
+	 * @throws IllegalArgumentException If the automaton is a kd-tree automaton.
+	 */
+	public static void write(Automaton automaton, Writer output) throws IOException {
+		if (automaton.isKdTree()) {
+			throw new IllegalArgumentException("Not a quadtree automaton");
+		}
+
+		int numberOfStates = automaton.getNumberOfStates();
+		int[] number = new int[numberOfStates];
+		Arrays.fill(number, -1);
+		int[] order = new int[numberOfStates];
+		int count = 0;
+
+		// Breadth-first numbering, so coarse states come before fine ones
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		number[0] = count;
+		order[count++] = 0;
+		queue.add(0);
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (int i = automaton.getTransitionStart(state); i < automaton
+					.getTransitionEnd(state); i++) {
+				int target = automaton.getTransitionTarget(i);
+				if (number[target] == -1) {
+					number[target] = count;
+					order[count++] = target;
+					queue.add(target);
+				}
+			}
+		}
+
+		CoverageRenderer coverage = new CoverageRenderer(automaton);
+		BufferedWriter writer = new BufferedWriter(output);
+		writer.write(HEADER + " " + count);
+		writer.newLine();
+
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			int state = order[i];
+			line.setLength(0);
+			line.append(automaton.isAcceptState(state) ? 1 : 0);
+			line.append(' ').append(Math.round(255 * (1 - coverage.getCoverage(state))));
+			for (int t = automaton.getTransitionStart(state); t < automaton
+					.getTransitionEnd(state); t++) {
+				line.append(' ').append(automaton.getTransitionSymbol(t));
+				line.append(' ').append(number[automaton.getTransitionTarget(t)]);
+			}
+			writer.write(line.toString());
+			writer.newLine();
+		}
+		writer.flush();
+	}
+}
\ No newline at end of file
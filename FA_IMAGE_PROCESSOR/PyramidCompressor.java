@@ -0,0 +1,164 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * This class compresses a whole resolution pyramid of an image into one
+ * multi-resolution automaton, so that the words of length k decode to the
+ * image reduced to 2^k by 2^k pixels. A reduced pixel is black when at least
+ * half of its block is black (the majority rule), or when any of it is black
+ * (the any-black rule).
+ *
+ * The pyramid is built bottom-up in a single pass over the rows of the image.
+ * Each level keeps only its last two rows of quadrant states and black pixel
+ * counts, and every completed pair of rows is reduced into a row of the level
+ * above. Quadrants are interned in a SubImageStateStore by their colour and
+ * their four sub-quadrants, so repeated content is shared across all levels.
+ * Entirely black quadrants collapse into one accepting state that loops to
+ * itself on every symbol, and entirely white ones have no state at all.
+ */
+public class PyramidCompressor {
+	private final boolean anyBlack;
+	private final SubImageStateStore store;
+	private final int black;
+
+	/**
+	 * Constructs a PyramidCompressor.
+	 *
+	 * @param anyBlack Whether to use the any-black rule instead of the majority
+	 * rule.
+	 */
+	public PyramidCompressor(boolean anyBlack) {
+		this.anyBlack = anyBlack;
+		this.store = new SubImageStateStore(Automaton.ALPHABET_SIZE);
+		this.black = store.blackState();
+	}
+
+	/**
+	 * Compresses the pyramid of an image.
+	 *
+	 * @param bitmap A square image whose side is a power of 2.
+	 * @return The automaton, whose start state is the whole image.
+	 */
+	public Automaton compress(PackedBitmap bitmap) {
+		int side = bitmap.getWidth();
+		int levels = Integer.numberOfTrailingZeros(side);
+
+		// Two rows of states and black counts per level, level 0 being the
+		// whole image
+		int[][][] states = new int[levels + 1][2][];
+		long[][][] counts = new long[levels + 1][2][];
+		for (int level = 0; level <= levels; level++) {
+			for (int row = 0; row < 2; row++) {
+				states[level][row] = new int[1 << level];
+				counts[level][row] = new long[1 << level];
+			}
+		}
+
+		for (int y = 0; y < side; y++) {
+			int[] stateRow = states[levels][y & 1];
+			long[] countRow = counts[levels][y & 1];
+			for (int x = 0; x < side; x++) {
+				boolean pixel = bitmap.isBlack(x, y);
+				stateRow[x] = pixel ? black : SubImageStateStore.NO_STATE;
+				countRow[x] = pixel ? 1 : 0;
+			}
+			reduce(states, counts, levels, y);
+		}
+		return toAutomaton(states[0][0][0]);
+	}
+
+	/**
+	 * Reduces a completed pair of rows of a level into a row of the level
+	 * above, and continues upwards while that completes a pair as well.
+	 *
+	 * @param states The two last rows of states of every level.
+	 * @param counts The two last rows of black counts of every level.
+	 * @param level The level whose row was just completed.
+	 * @param y The index of the completed row within its level.
+	 */
+	private void reduce(int[][][] states, long[][][] counts, int level, int y) {
+		int[] quadrant = new int[Automaton.ALPHABET_SIZE];
+		while (level > 0 && (y & 1) == 1) {
+			int[] top = states[level][0];
+			int[] bottom = states[level][1];
+			long[] topCounts = counts[level][0];
+			long[] bottomCounts = counts[level][1];
+			int[] stateRow = states[level - 1][(y >> 1) & 1];
+			long[] countRow = counts[level - 1][(y >> 1) & 1];
+			long area = 1L << (2 * (states.length - level));
+
+			for (int x = 0; x < stateRow.length; x++) {
+				// Symbols: 0 bottom left, 1 top left, 2 bottom right, 3 top right
+				quadrant[0] = bottom[2 * x];
+				quadrant[1] = top[2 * x];
+				quadrant[2] = bottom[2 * x + 1];
+				quadrant[3] = top[2 * x + 1];
+				long count = topCounts[2 * x] + topCounts[2 * x + 1] + bottomCounts[2 * x]
+						+ bottomCounts[2 * x + 1];
+				countRow[x] = count;
+
+				if (count == area) {
+					stateRow[x] = black;
+				} else {
+					boolean accept = anyBlack ? count > 0 : 2 * count >= area;
+					stateRow[x] = store.intern(accept, quadrant);
+				}
+			}
+			level--;
+			y >>= 1;
+		}
+	}
+
+	/**
+	 * Numbers the states reachable from the root breadth-first, the root
+	 * being state 0, and adds the black state's loops.
+	 *
+	 * @param root The state of the whole image.
+	 * @return The automaton.
+	 */
+	private Automaton toAutomaton(int root) {
+		if (root == SubImageStateStore.NO_STATE) {
+			return new Automaton(1, new boolean[1], new int[0], new int[0], new int[0], 0);
+		}
+
+		int[] number = new int[store.size()];
+		Arrays.fill(number, SubImageStateStore.NO_STATE);
+		boolean[] acceptStates = new boolean[store.size()];
+		int[] fromStates = new int[16];
+		int[] toStates = new int[16];
+		int[] symbols = new int[16];
+		int count = 0;
+		int numberOfStates = 0;
+
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		number[root] = numberOfStates++;
+		queue.add(root);
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			acceptStates[number[state]] = store.isAccepting(state);
+
+			for (int symbol = 0; symbol < Automaton.ALPHABET_SIZE; symbol++) {
+				// The black state stays black at every finer level
+				int child = state == black ? black : store.getChild(state, symbol);
+				if (child == SubImageStateStore.NO_STATE) {
+					continue;
+				}
+				if (number[child] == SubImageStateStore.NO_STATE) {
+					number[child] = numberOfStates++;
+					queue.add(child);
+				}
+
+				if (count == fromStates.length) {
+					fromStates = Arrays.copyOf(fromStates, count * 2);
+					toStates = Arrays.copyOf(toStates, count * 2);
+					symbols = Arrays.copyOf(symbols, count * 2);
+				}
+				fromStates[count] = number[state];
+				toStates[count] = number[child];
+				symbols[count++] = symbol;
+			}
+		}
+		return new Automaton(numberOfStates, acceptStates, fromStates, toStates, symbols,
+				count);
+	}
+}
\ No newline at end of file
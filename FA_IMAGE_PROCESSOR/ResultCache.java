@@ -0,0 +1,264 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class is an on-disk, content-addressed cache of compression and
+ * decompression results. Entries are keyed by a hash of the input file bytes
+ * together with the mode, flag and method/word length arguments, and hold a
+ * copy of the _cmp.txt or _dec.png file that the job produced. The cache is
+ * bounded in size and evicts the least recently used entries first. Several
+ * processes may share one cache directory: every change is made under an
+ * exclusive lock file and entries are published with atomic renames.
+ */
+public class ResultCache {
+	private static final String LOCK_FILE_NAME = ".lock";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+	private static final long STALE_TEMP_MILLIS = 60L * 60 * 1000;
+
+	// FileChannel locks are held per process, so threads of one JVM are
+	// serialised here before they touch the lock file
+	private static final Object PROCESS_LOCK = new Object();
+
+	private final Path cacheDirectory;
+	private final long maxBytes;
+
+	/**
+	 * Constructs a ResultCache stored in the given directory.
+	 *
+	 * @param cacheDirectory The directory holding the cache entries.
+	 * @param maxBytes The total size the cache is trimmed to after a store.
+	 */
+	public ResultCache(Path cacheDirectory, long maxBytes) {
+		this.cacheDirectory = cacheDirectory;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Creates a cache from the fa.cache.dir and fa.cache.maxBytes system
+	 * properties. Caching is disabled unless fa.cache.dir is set.
+	 *
+	 * @return The configured ResultCache, or null if caching is disabled.
+	 */
+	public static ResultCache fromSystemProperties() {
+		String directory = System.getProperty("fa.cache.dir");
+		if (directory == null || directory.isEmpty()) {
+			return null;
+		}
+
+		long maxBytes = DEFAULT_MAX_BYTES;
+		try {
+			maxBytes = Long.parseLong(System.getProperty("fa.cache.maxBytes",
+					Long.toString(DEFAULT_MAX_BYTES)));
+		} catch (NumberFormatException e) {
+			System.err.println("Cache Error - Invalid fa.cache.maxBytes, using default");
+		}
+		return new ResultCache(Paths.get(directory), maxBytes);
+	}
+
+	/**
+	 * Computes the cache key of a job: a SHA-256 hash over the input file
+	 * bytes followed by every argument except the GUI flag and the file path.
+	 *
+	 * @param inputFilePath The path of the job's input file.
+	 * @param args The command line arguments of the job.
+	 * @return The hexadecimal cache key.
+	 * @throws IOException If the input file cannot be read.
+	 */
+	public String keyFor(String inputFilePath, String[] args) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA-256 is not available", e);
+		}
+
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream in = Files.newInputStream(Paths.get(inputFilePath))) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+
+		// Mode, multi-resolution flag and method/word length, lower-cased so
+		// that "T" and "t" share an entry
+		for (int i = 1; i < args.length - 1; i++) {
+			digest.update((byte) 0);
+			digest.update(args[i].toLowerCase().getBytes(StandardCharsets.UTF_8));
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Copies the cached result for the given key to the output path, if there
+	 * is one, and marks the entry as recently used.
+	 *
+	 * @param key The cache key of the job.
+	 * @param outputFilePath The path the job would have written its result to.
+	 * @return true if the result was served from the cache, false otherwise.
+	 */
+	public boolean fetch(String key, String outputFilePath) {
+		Path entry = cacheDirectory.resolve(key + extensionOf(outputFilePath));
+		synchronized (PROCESS_LOCK) {
+			try (FileChannel lockChannel = openLockFile()) {
+				// Closing the channel releases the lock
+				lockChannel.lock();
+				if (!Files.isRegularFile(entry)) {
+					return false;
+				}
+				copyAtomically(entry, Paths.get(outputFilePath));
+				Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+				return true;
+			} catch (IOException e) {
+				System.err.println("Cache Error - " + e.getMessage());
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Stores the result written to the output path under the given key and
+	 * evicts least recently used entries until the cache fits its size limit.
+	 *
+	 * @param key The cache key of the job.
+	 * @param outputFilePath The path the job wrote its result to.
+	 */
+	public void store(String key, String outputFilePath) {
+		Path output = Paths.get(outputFilePath);
+		if (!Files.isRegularFile(output)) {
+			return;
+		}
+
+		Path entry = cacheDirectory.resolve(key + extensionOf(outputFilePath));
+		synchronized (PROCESS_LOCK) {
+			try (FileChannel lockChannel = openLockFile()) {
+				// Closing the channel releases the lock
+				lockChannel.lock();
+				copyAtomically(output, entry);
+				evict(entry);
+			} catch (IOException e) {
+				System.err.println("Cache Error - " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Deletes least recently used entries until the total size of the cache
+	 * is within maxBytes. Temporary files left behind by crashed processes are
+	 * removed as well. Must be called while holding the lock file.
+	 *
+	 * @param keep The entry that was just stored, which is never evicted.
+	 * @throws IOException If the cache directory cannot be listed.
+	 */
+	private void evict(Path keep) throws IOException {
+		List<Path> entries = new ArrayList<>();
+		long totalBytes = 0;
+		long now = System.currentTimeMillis();
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDirectory)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				if (name.equals(LOCK_FILE_NAME)) {
+					continue;
+				}
+				if (name.endsWith(TEMP_SUFFIX)) {
+					if (now - Files.getLastModifiedTime(path).toMillis() > STALE_TEMP_MILLIS) {
+						Files.deleteIfExists(path);
+					}
+					continue;
+				}
+				entries.add(path);
+				totalBytes += Files.size(path);
+			}
+		}
+
+		if (totalBytes <= maxBytes) {
+			return;
+		}
+
+		// Oldest access time first
+		entries.sort(Comparator.comparingLong(path -> {
+			try {
+				return Files.getLastModifiedTime(path).toMillis();
+			} catch (IOException e) {
+				return 0L;
+			}
+		}));
+
+		for (Path path : entries) {
+			if (totalBytes <= maxBytes) {
+				break;
+			}
+			if (path.equals(keep)) {
+				continue;
+			}
+			long size = Files.size(path);
+			Files.deleteIfExists(path);
+			totalBytes -= size;
+		}
+	}
+
+	/**
+	 * Opens the cache's lock file, creating the cache directory if needed.
+	 *
+	 * @return An open FileChannel on the lock file.
+	 * @throws IOException If the directory or lock file cannot be created.
+	 */
+	private FileChannel openLockFile() throws IOException {
+		Files.createDirectories(cacheDirectory);
+		return FileChannel.open(cacheDirectory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Copies a file to a temporary file next to the target and renames it into
+	 * place, so that readers never see a partially written file.
+	 *
+	 * @param source The file to copy.
+	 * @param target The path to publish the copy at.
+	 * @throws IOException If the copy or the rename fails.
+	 */
+	private static void copyAtomically(Path source, Path target) throws IOException {
+		Path directory = target.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, target.getFileName().toString(), TEMP_SUFFIX);
+		try {
+			Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Returns the extension of a file path, including the dot.
+	 *
+	 * @param filePath The file path.
+	 * @return The extension, or an empty string if there is none.
+	 */
+	private static String extensionOf(String filePath) {
+		int dot = filePath.lastIndexOf('.');
+		return dot < 0 ? "" : filePath.substring(dot);
+	}
+}
\ No newline at end of file
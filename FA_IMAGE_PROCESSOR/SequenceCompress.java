@@ -0,0 +1,85 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import javax.imageio.ImageIO;
+
+/**
+ * This class provides delta compression of frame sequences, and extraction of
+ * single frames from a compressed sequence.
+ */
+public class SequenceCompress {
+
+	/**
+	 * The main entry point for sequence compression and extraction.
+	 *
+	 * Compression: 2 <sequence.txt> <frame.png>... compresses the frames, in
+	 * order, into the sequence file.
+	 *
+	 * Extraction: 1 <sequence.txt> <frame index> writes the frame to
+	 * out/<sequence>_<frame index>_dec.png.
+	 *
+	 * @param args Command line arguments for specifying the operation mode,
+	 * the sequence file and the frames.
+	 * @throws IOException If an error occurs while reading or writing files.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3 || !args[0].matches("[12]")) {
+			System.err.println("Input Error - Invalid number of arguments");
+			System.exit(0);
+		}
+		File sequenceFile = new File(args[1]);
+
+		if (args[0].equals("1")) {// Extraction
+			int frameIndex = -1;
+			try {
+				frameIndex = Integer.parseInt(args[2]);
+			} catch (NumberFormatException e) {
+				System.err.println("Input Error - Invalid argument type");
+				System.exit(0);
+			}
+			if (!sequenceFile.isFile()) {
+				System.err.println("Input Error - Invalid or missing file");
+				System.exit(0);
+			}
+
+			BufferedImage frame = null;
+			try (Reader reader = new FileReader(sequenceFile)) {
+				frame = FrameSequence.readFrame(reader, frameIndex);
+			} catch (IOException e) {
+				System.err.println("Decompress Error - " + e.getMessage());
+				System.exit(0);
+			}
+			String outputName = sequenceFile.getName().replace(".txt", "") + "_" + frameIndex
+					+ "_dec.png";
+			if (!ImageIO.write(frame, "png", new File("out/" + outputName))) {
+				System.err.println("Error: Error writing image to file");
+				System.exit(0);
+			}
+		} else {// Compression
+			FrameSequence sequence = null;
+			try (Writer writer = new FileWriter(sequenceFile)) {
+				for (int i = 2; i < args.length; i++) {
+					File frameFile = new File(args[i]);
+					BufferedImage frame = frameFile.isFile() ? ImageIO.read(frameFile) : null;
+					if (frame == null) {
+						System.err.println("Input Error - Invalid or missing file");
+						System.exit(0);
+					}
+					try {
+						if (sequence == null) {
+							sequence = new FrameSequence(frame.getWidth());
+						}
+						sequence.compressFrame(frame, writer);
+					} catch (IllegalArgumentException | ImageFormatException e) {
+						System.err.println("Compress Error - Invalid input image " + args[i]);
+						System.exit(0);
+					}
+				}
+			}
+		}
+	}
+}
\ No newline at end of file
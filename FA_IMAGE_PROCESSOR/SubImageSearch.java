@@ -0,0 +1,208 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class finds every aligned occurrence of a pattern in a compressed
+ * image without decompressing it. The target automaton and the pattern are
+ * interned into the same SubImageStateStore, where equal sub-images always
+ * share one state, so a pattern occurs exactly at the quadrants whose state
+ * is the pattern's state.
+ *
+ * Those quadrants are found by walking the reverse transitions from the
+ * pattern's state back to the root. Every state knows the depths at which it
+ * can be reached from the root, so only walks ending at the root at depth 0
+ * are taken, and the cost is the size of the automaton plus the length of the
+ * addresses found, whatever the number of pixels. Patterns are interned into
+ * the store as they are searched for, so instances are not thread-safe.
+ */
+public final class SubImageSearch {
+	private final SubImageStateStore store;
+	private final int root;
+	private final int black;
+	private final int depth;
+	private final long[] depths;
+	private final int[] parentStart;
+	private final int[] parents;
+	private final int[] parentSymbols;
+
+	/**
+	 * Constructs a SubImageSearch over a target image.
+	 *
+	 * @param target A deterministic plain automaton, as compressed with the f
+	 * flag. Its image size is given by its longest word, as in decompression.
+	 * @throws IllegalArgumentException If the automaton is a kd-tree
+	 * automaton, is not deterministic or loops through states that are not
+	 * accepting.
+	 */
+	public SubImageSearch(Automaton target) {
+		if (target.isKdTree()) {
+			throw new IllegalArgumentException("Not a quadtree automaton");
+		}
+		this.store = new SubImageStateStore(Automaton.ALPHABET_SIZE);
+		this.root = store.internAutomaton(target);
+		this.black = store.blackState();
+		int states = root + 1;
+
+		// Children are always interned before their parents, so walking the
+		// states downwards from the root visits every parent before its
+		// children
+		depths = new long[states];
+		int[] parentCounts = new int[states + 1];
+		int maxDepth = 0;
+		if (root != SubImageStateStore.NO_STATE) {
+			depths[root] = 1L;
+		}
+		for (int state = root; state >= 0; state--) {
+			if (depths[state] == 0) {
+				continue;
+			}
+			maxDepth = Math.max(maxDepth, 63 - Long.numberOfLeadingZeros(depths[state]));
+			for (int symbol = 0; symbol < Automaton.ALPHABET_SIZE; symbol++) {
+				int child = store.getChild(state, symbol);
+				if (child != SubImageStateStore.NO_STATE) {
+					depths[child] |= depths[state] << 1;
+					parentCounts[child + 1]++;
+				}
+			}
+		}
+		this.depth = maxDepth;
+
+		// The reverse transitions of the reachable states, grouped by child
+		for (int state = 0; state < states; state++) {
+			parentCounts[state + 1] += parentCounts[state];
+		}
+		parentStart = parentCounts.clone();
+		parents = new int[parentCounts[states]];
+		parentSymbols = new int[parentCounts[states]];
+		for (int state = root; state >= 0; state--) {
+			if (depths[state] == 0) {
+				continue;
+			}
+			for (int symbol = 0; symbol < Automaton.ALPHABET_SIZE; symbol++) {
+				int child = store.getChild(state, symbol);
+				if (child != SubImageStateStore.NO_STATE) {
+					parents[parentCounts[child]] = state;
+					parentSymbols[parentCounts[child]++] = symbol;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The main entry point for searching a compressed image.
+	 *
+	 * @param args The automaton text file of the target image and the pattern
+	 * image file. Each occurrence is printed as its transition address and
+	 * the coordinates of its top left corner.
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.err.println("Input Error - Invalid number of arguments");
+			System.exit(0);
+		}
+
+		try {
+			SubImageSearch search = new SubImageSearch(Automaton.read(new File(args[0])));
+			BilevelImage pattern = BilevelImage.read(Paths.get(args[1]));
+			int imageSize = 1 << search.getDepth();
+			for (int[] address : search.find(pattern)) {
+				StringBuilder line = new StringBuilder();
+				for (int symbol : address) {
+					line.append(symbol);
+				}
+				int[] block = TransitionAddressesToImage.findBlock(address, imageSize);
+				line.append(' ').append(block[0]).append(' ').append(block[1]);
+				System.out.println(line);
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * Returns the depth of the target image, so its side is 2^depth.
+	 *
+	 * @return The depth.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Finds every aligned occurrence of a pattern in the target image. An
+	 * entirely white pattern has no state, so it is never found.
+	 *
+	 * @param pattern A square pattern whose side is a power of 2.
+	 * @return The transition addresses of the quadrants equal to the pattern,
+	 * each as an array of symbols.
+	 */
+	public List<int[]> find(BilevelImage pattern) {
+		List<int[]> addresses = new ArrayList<>();
+		int length = depth - Integer.numberOfTrailingZeros(pattern.getSize());
+		if (root == SubImageStateStore.NO_STATE || length < 0) {
+			return addresses;
+		}
+
+		// A pattern that adds states to the store does not occur in the target
+		int state = store.internBitmap(pattern.getPackedBitmap());
+		if (state == SubImageStateStore.NO_STATE || state > root) {
+			return addresses;
+		}
+		if (state != black) {
+			if ((depths[state] & (1L << length)) != 0) {
+				collect(state, length, new int[length], addresses);
+			}
+			return addresses;
+		}
+
+		// A black pattern also occurs inside every larger black quadrant, whose
+		// state has no transitions, so those are expanded by every suffix
+		for (int prefixLength = 0; prefixLength <= length; prefixLength++) {
+			if ((depths[black] & (1L << prefixLength)) == 0) {
+				continue;
+			}
+			List<int[]> prefixes = new ArrayList<>();
+			collect(black, prefixLength, new int[prefixLength], prefixes);
+			int suffixLength = length - prefixLength;
+			for (int[] prefix : prefixes) {
+				for (long suffix = 0; suffix < 1L << (2 * suffixLength); suffix++) {
+					int[] address = Arrays.copyOf(prefix, length);
+					for (int i = 0; i < suffixLength; i++) {
+						address[length - 1 - i] = (int) (suffix >> (2 * i)) & 3;
+					}
+					addresses.add(address);
+				}
+			}
+		}
+		return addresses;
+	}
+
+	/**
+	 * Walks the reverse transitions from a state back to the root, filling in
+	 * the address from its end.
+	 *
+	 * @param state The current state, which is reachable from the root in
+	 * exactly remaining steps.
+	 * @param remaining The number of symbols of the address left to fill in.
+	 * @param address The address being filled in.
+	 * @param addresses The list the complete addresses are added to.
+	 */
+	private void collect(int state, int remaining, int[] address, List<int[]> addresses) {
+		if (remaining == 0) {
+			addresses.add(address.clone());
+			return;
+		}
+		for (int i = parentStart[state]; i < parentStart[state + 1]; i++) {
+			int parent = parents[i];
+			if ((depths[parent] & (1L << (remaining - 1))) != 0) {
+				address[remaining - 1] = parentSymbols[i];
+				collect(parent, remaining - 1, address, addresses);
+			}
+		}
+	}
+}
\ No newline at end of file
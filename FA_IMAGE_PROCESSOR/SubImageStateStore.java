@@ -0,0 +1,462 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * This class is a store of canonical sub-image states. Each state is
+ * identified by whether it is accepting and by the states its transitions lead
+ * to, so two sub-images with the same content always intern to the same
+ * state. For quadtree images this yields the same states as the residual
+ * language construction in TransitionAddressesToTextFile, but in time linear
+ * in the number of quadrants, and a single store can be shared by many images.
+ */
+public class SubImageStateStore {
+	public static final int NO_STATE = -1;
+
+	private final int arity;
+	private int size;
+	private int[] children;
+	private boolean[] accepting;
+	private int[] hashTable;
+
+	/**
+	 * Constructs an empty SubImageStateStore.
+	 *
+	 * @param arity The number of symbols of the alphabet, 4 for quadrants.
+	 */
+	public SubImageStateStore(int arity) {
+		this.arity = arity;
+		this.size = 0;
+		this.children = new int[64 * arity];
+		this.accepting = new boolean[64];
+		this.hashTable = new int[128];
+		Arrays.fill(hashTable, NO_STATE);
+	}
+
+	/**
+	 * Returns the number of symbols of the alphabet.
+	 *
+	 * @return The alphabet size.
+	 */
+	public int getArity() {
+		return arity;
+	}
+
+	/**
+	 * Returns the number of states in the store.
+	 *
+	 * @return The number of states.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns whether the given state is accepting.
+	 *
+	 * @param state The state.
+	 * @return true if the state is accepting, false otherwise.
+	 */
+	public boolean isAccepting(int state) {
+		return accepting[state];
+	}
+
+	/**
+	 * Returns the destination of a state's transition on a symbol.
+	 *
+	 * @param state The state.
+	 * @param symbol The symbol.
+	 * @return The destination state, or NO_STATE if there is no transition.
+	 */
+	public int getChild(int state, int symbol) {
+		return children[state * arity + symbol];
+	}
+
+	/**
+	 * Returns the accepting state without transitions, which stands for an
+	 * entirely black sub-image.
+	 *
+	 * @return The black state.
+	 */
+	public int blackState() {
+		int[] none = new int[arity];
+		Arrays.fill(none, NO_STATE);
+		return intern(true, none);
+	}
+
+	/**
+	 * Returns the state with the given acceptance and transitions, adding it to
+	 * the store if it is not there yet. A non-accepting state without
+	 * transitions accepts nothing and is returned as NO_STATE.
+	 *
+	 * @param accept Whether the state is accepting.
+	 * @param childStates The destination of each symbol's transition, or
+	 * NO_STATE.
+	 * @return The canonical state.
+	 */
+	public int intern(boolean accept, int[] childStates) {
+		if (!accept && isEmpty(childStates)) {
+			return NO_STATE;
+		}
+
+		int mask = hashTable.length - 1;
+		int slot = hash(accept, childStates) & mask;
+		while (hashTable[slot] != NO_STATE) {
+			int state = hashTable[slot];
+			if (matches(state, accept, childStates)) {
+				return state;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (size == accepting.length) {
+			accepting = Arrays.copyOf(accepting, size * 2);
+			children = Arrays.copyOf(children, size * 2 * arity);
+		}
+		int state = size++;
+		accepting[state] = accept;
+		System.arraycopy(childStates, 0, children, state * arity, arity);
+		hashTable[slot] = state;
+
+		if (size * 2 > hashTable.length) {
+			rehash();
+		}
+		return state;
+	}
+
+	/**
+	 * Interns every quadrant of a packed black and white image, bottom-up, and
+	 * returns the state of the whole image.
+	 *
+	 * @param bitmap A square image whose side is a power of 2.
+	 * @return The state of the image, or NO_STATE if it is entirely white.
+	 */
+	public int internBitmap(PackedBitmap bitmap) {
+		int side = bitmap.getWidth();
+		int black = blackState();
+
+		int[] level = new int[side * side];
+		for (int y = 0; y < side; y++) {
+			for (int x = 0; x < side; x++) {
+				level[y * side + x] = bitmap.isBlack(x, y) ? black : NO_STATE;
+			}
+		}
+		return internLevels(level, side);
+	}
+
+	/**
+	 * Interns the sub-image of every state of a plain automaton, in which an
+	 * accept state stands for an entirely black block, and returns the state
+	 * of the whole image. Each state of the automaton is visited once.
+	 *
+	 * @param automaton A deterministic plain automaton, whose start state is
+	 * 0.
+	 * @return The state of the image, or NO_STATE if it is entirely white.
+	 * @throws IllegalArgumentException If the automaton's symbols do not match
+	 * the arity of the store, or it is not deterministic or loops through
+	 * states that are not accepting.
+	 */
+	public int internAutomaton(Automaton automaton) {
+		if ((automaton.isKdTree() ? 2 : Automaton.ALPHABET_SIZE) != arity) {
+			throw new IllegalArgumentException("Automaton does not match the store's arity");
+		}
+		int numberOfStates = automaton.getNumberOfStates();
+		int black = blackState();
+		int[] interned = new int[numberOfStates];
+		// 0 is unvisited, 1 is on the stack and 2 is interned
+		byte[] visit = new byte[numberOfStates];
+		int[] stack = new int[numberOfStates];
+		int depth = 0;
+
+		stack[depth++] = 0;
+		visit[0] = 1;
+		while (depth > 0) {
+			int state = stack[depth - 1];
+			if (automaton.isAcceptState(state)) {
+				// An accepted block is black whatever lies below it
+				interned[state] = black;
+				visit[state] = 2;
+				depth--;
+				continue;
+			}
+
+			// Push the first child that is not interned yet
+			boolean pushed = false;
+			for (int i = automaton.getTransitionStart(state); i < automaton
+					.getTransitionEnd(state) && !pushed; i++) {
+				int target = automaton.getTransitionTarget(i);
+				if (visit[target] == 1) {
+					throw new IllegalArgumentException(
+							"Automaton loops through state " + target);
+				}
+				if (visit[target] == 0) {
+					visit[target] = 1;
+					stack[depth++] = target;
+					pushed = true;
+				}
+			}
+			if (pushed) {
+				continue;
+			}
+
+			int[] childStates = new int[arity];
+			Arrays.fill(childStates, NO_STATE);
+			int symbolsSeen = 0;
+			for (int i = automaton.getTransitionStart(state); i < automaton
+					.getTransitionEnd(state); i++) {
+				int symbol = automaton.getTransitionSymbol(i);
+				if ((symbolsSeen & (1 << symbol)) != 0) {
+					throw new IllegalArgumentException(
+							"Automaton is not deterministic at state " + state);
+				}
+				symbolsSeen |= 1 << symbol;
+				childStates[symbol] = interned[automaton.getTransitionTarget(i)];
+			}
+			interned[state] = internQuadrant(childStates, black);
+			visit[state] = 2;
+			depth--;
+		}
+		return interned[0];
+	}
+
+	/**
+	 * Returns the state of a quadrant made of the given four sub-quadrants. A
+	 * quadrant whose sub-quadrants are all black is black itself.
+	 *
+	 * @param quadrant The states of the sub-quadrants, in symbol order.
+	 * @param black The black state of this store.
+	 * @return The state of the quadrant.
+	 */
+	int internQuadrant(int[] quadrant, int black) {
+		if (quadrant[0] == black && quadrant[1] == black && quadrant[2] == black
+				&& quadrant[3] == black) {
+			return black;
+		}
+		return intern(false, quadrant);
+	}
+
+	/**
+	 * Merges a level of pixel states into quadrants until a single state for
+	 * the whole image is left. Quadrants whose four children are black become
+	 * black themselves, so only maximal black quadrants are accepted.
+	 *
+	 * @param level The states of the pixels, row by row from the top.
+	 * @param side The side length of the level.
+	 * @return The state of the whole image.
+	 */
+	int internLevels(int[] level, int side) {
+		int black = blackState();
+		int[] quadrant = new int[arity];
+
+		while (side > 1) {
+			int half = side / 2;
+			int[] next = new int[half * half];
+			for (int y = 0; y < half; y++) {
+				for (int x = 0; x < half; x++) {
+					int top = 2 * y * side + 2 * x;
+					int bottom = top + side;
+					quadrant[0] = level[bottom];
+					quadrant[1] = level[top];
+					quadrant[2] = level[bottom + 1];
+					quadrant[3] = level[top + 1];
+					next[y * half + x] = internQuadrant(quadrant, black);
+				}
+			}
+			level = next;
+			side = half;
+		}
+		return level[0];
+	}
+
+	/**
+	 * Renders the sub-image of a state as a black and white image.
+	 *
+	 * @param root The state to render, or NO_STATE for a white image.
+	 * @param imageSize The side length of the image, a power of 2.
+	 * @return The rendered image.
+	 */
+	public BufferedImage renderImage(int root, int imageSize) {
+		BufferedImage image = new BufferedImage(imageSize, imageSize,
+				BufferedImage.TYPE_BYTE_BINARY);
+		Graphics2D graphicImage = image.createGraphics();
+		graphicImage.setColor(Color.white);
+		graphicImage.fillRect(0, 0, imageSize, imageSize);
+		graphicImage.setColor(Color.black);
+		if (root != NO_STATE) {
+			renderQuadrant(graphicImage, root, 0, 0, imageSize);
+		}
+		graphicImage.dispose();
+		return image;
+	}
+
+	/**
+	 * Recursively draws the black quadrants reachable from a state.
+	 *
+	 * @param graphicImage The graphics to draw with.
+	 * @param state The state of the current quadrant.
+	 * @param x The x-coordinate of the top-left corner of the quadrant.
+	 * @param y The y-coordinate of the top-left corner of the quadrant.
+	 * @param quadrantSize The size of the quadrant.
+	 */
+	private void renderQuadrant(Graphics2D graphicImage, int state, int x, int y,
+			int quadrantSize) {
+		if (accepting[state]) {
+			graphicImage.fillRect(x, y, quadrantSize, quadrantSize);
+			return;
+		}
+		if (quadrantSize == 1) {
+			return;
+		}
+
+		int half = quadrantSize / 2;
+		int[] xs = { x, x, x + half, x + half };
+		int[] ys = { y + half, y, y + half, y };
+		for (int symbol = 0; symbol < arity; symbol++) {
+			int child = children[state * arity + symbol];
+			if (child != NO_STATE) {
+				renderQuadrant(graphicImage, child, xs[symbol], ys[symbol], half);
+			}
+		}
+	}
+
+	/**
+	 * Writes the states reachable from a root in the automaton text file
+	 * format, renumbered breadth-first so that the root is state 0.
+	 *
+	 * @param output The writer to write the automaton to.
+	 * @param root The state of the image.
+	 * @throws IOException If an error occurs while writing.
+	 */
+	public void writeAutomaton(Writer output, int root) throws IOException {
+		int[] number = new int[size];
+		Arrays.fill(number, NO_STATE);
+		int[] order = new int[size];
+		int count = 0;
+
+		if (root != NO_STATE) {
+			number[root] = count;
+			order[count++] = root;
+		}
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		if (root != NO_STATE) {
+			queue.add(root);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (int symbol = 0; symbol < arity; symbol++) {
+				int child = children[state * arity + symbol];
+				if (child != NO_STATE && number[child] == NO_STATE) {
+					number[child] = count;
+					order[count++] = child;
+					queue.add(child);
+				}
+			}
+		}
+
+		BufferedWriter writer = new BufferedWriter(output);
+		writer.write(Integer.toString(Math.max(count, 1)));
+		writer.newLine();
+
+		StringBuilder acceptLine = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (accepting[order[i]]) {
+				if (acceptLine.length() > 0) {
+					acceptLine.append(' ');
+				}
+				acceptLine.append(i);
+			}
+		}
+		writer.write(acceptLine.toString());
+		writer.newLine();
+
+		for (int i = 0; i < count; i++) {
+			for (int symbol = 0; symbol < arity; symbol++) {
+				int child = children[order[i] * arity + symbol];
+				if (child != NO_STATE) {
+					writer.write(i + " " + number[child] + " " + symbol);
+					writer.newLine();
+				}
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Returns whether every entry of the array is NO_STATE.
+	 *
+	 * @param childStates The transition destinations.
+	 * @return true if there are no transitions, false otherwise.
+	 */
+	private static boolean isEmpty(int[] childStates) {
+		for (int child : childStates) {
+			if (child != NO_STATE) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether a stored state has the given acceptance and transitions.
+	 *
+	 * @param state The stored state.
+	 * @param accept Whether the state should be accepting.
+	 * @param childStates The transition destinations it should have.
+	 * @return true if they match, false otherwise.
+	 */
+	private boolean matches(int state, boolean accept, int[] childStates) {
+		if (accepting[state] != accept) {
+			return false;
+		}
+		int offset = state * arity;
+		for (int symbol = 0; symbol < arity; symbol++) {
+			if (children[offset + symbol] != childStates[symbol]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hashes a state's acceptance and transitions.
+	 *
+	 * @param accept Whether the state is accepting.
+	 * @param childStates The transition destinations.
+	 * @return The hash code.
+	 */
+	private int hash(boolean accept, int[] childStates) {
+		int h = accept ? 1 : 0;
+		for (int symbol = 0; symbol < arity; symbol++) {
+			h = h * 31 + childStates[symbol];
+		}
+
+		// States are numbered densely, so the sum alone leaves long runs of
+		// neighbouring slots for linear probing to walk
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Doubles the hash table and re-inserts every state.
+	 */
+	private void rehash() {
+		hashTable = new int[hashTable.length * 2];
+		Arrays.fill(hashTable, NO_STATE);
+		int mask = hashTable.length - 1;
+		int[] childStates = new int[arity];
+
+		for (int state = 0; state < size; state++) {
+			System.arraycopy(children, state * arity, childStates, 0, arity);
+			int slot = hash(accepting[state], childStates) & mask;
+			while (hashTable[slot] != NO_STATE) {
+				slot = (slot + 1) & mask;
+			}
+			hashTable[slot] = state;
+		}
+	}
+}
\ No newline at end of file
@@ -28,23 +28,25 @@ public class TransitionAddressesToImage {
 	 * @param inputFilePath the input file path to be used for naming the output
 	 * image file
 	 * @param gui an integer indicating whether to use a GUI (1) or not (0)
+	 * @throws IOException if the image cannot be written to its file
 	 */
 	TransitionAddressesToImage(ArrayList<ArrayList<Integer>> transitionAddresses,
-			String inputFilePath, int gui) {
-		int maxElements = 0;
-		int rowWithMaxElementsIndex = -1;
+			String inputFilePath, int gui) throws IOException {
+		// Calculate the size of the image based on the largest row
+		int imageSize = imageSizeOf(transitionAddresses);
 
-		// Find the size of the largest row
-		for (int i = 0; i < transitionAddresses.size(); i++) {
-			ArrayList<Integer> currentList = transitionAddresses.get(i);
-			if (currentList.size() > maxElements) {
-				maxElements = currentList.size();
-				rowWithMaxElementsIndex = i;
-			}
+		if (inputFilePath.contains("/")) {
+			inputFilePath = inputFilePath.substring(inputFilePath.lastIndexOf("/"));
+		}
+
+		// PBM and raw output is drawn straight into packed rows
+		String extension = BitmapCodec.decompressedExtension();
+		if (gui == 0 && !extension.equals(".png")) {
+			BitmapCodec.write(toBitmap(transitionAddresses),
+					new File("out/" + inputFilePath.replace(".txt", "_dec" + extension)));
+			return;
 		}
 
-		// Calculate the size of the image based on the largest row
-		int imageSize = (int) Math.pow(2, maxElements);
 		image = new BufferedImage(imageSize, imageSize, BufferedImage.TYPE_BYTE_BINARY);
 		Graphics2D graphicImage = image.createGraphics();
 
@@ -54,58 +56,175 @@ public class TransitionAddressesToImage {
 
 		// Draw each transition address on the image
 		for (ArrayList<Integer> current : transitionAddresses) {
+			int[] block = findBlock(current, imageSize);
 
-			int x = 0;
-			int y = 0;
-			int blockScale = imageSize;
-			for (int address : current) {
-				blockScale = blockScale / 2;
-
-				// Calculate the position of the current block based on the
-				// current address
-				switch (address) {
-				case 0:
-					y = y + blockScale;
-					break;
-
-				case 1:
-					break;
-
-				case 2:
-					y = y + blockScale;
-					x = x + blockScale;
-					break;
-
-				case 3:
-					x = x + blockScale;
-					break;
-				}
-			}
 			// Draw the current block on the image
 			graphicImage.setColor(Color.black);
-			graphicImage.fillRect(x, y, blockScale, blockScale);
+			graphicImage.fillRect(block[0], block[1], block[2], block[2]);
 		}
 		graphicImage.dispose();
 
 		// If the GUI flag is set to 0, save the image to a file
 		if (gui == 0) {
-			try {
-				if (inputFilePath.contains("/")) {
-					inputFilePath = inputFilePath.substring(inputFilePath.lastIndexOf("/"));
-				}
-				if (!ImageIO.write(image, "png",
-						new File("out/" + inputFilePath.replace(".txt", "_dec.png")))) {
-					throw new IOException("Error writing image to file");
-				}
-			} catch (IOException e) {
-				System.err.println("Error: " + e.getMessage());
-				System.exit(0);
+			if (!ImageIO.write(image, "png",
+					new File("out/" + inputFilePath.replace(".txt", "_dec.png")))) {
+				throw new IOException("Error writing image to file");
 			}
 		} else {// display the image on a GUI
 			displayImageInGUI();
 		}
 	}
 
+	/**
+	 * Draws transition addresses into a packed 1-bit image.
+	 *
+	 * @param transitionAddresses a 2D ArrayList of Integers representing the
+	 * transition addresses
+	 * @return the image, whose size is given by the longest address
+	 */
+	static PackedBitmap toBitmap(ArrayList<ArrayList<Integer>> transitionAddresses) {
+		return toBitmap(transitionAddresses, imageSizeOf(transitionAddresses));
+	}
+
+	/**
+	 * Draws transition addresses into a packed 1-bit image of a given size,
+	 * which stays white where no address leads.
+	 *
+	 * @param transitionAddresses a 2D ArrayList of Integers representing the
+	 * transition addresses, none longer than the image is deep
+	 * @param imageSize the side of the image, a power of 2
+	 * @return the image
+	 */
+	static PackedBitmap toBitmap(ArrayList<ArrayList<Integer>> transitionAddresses,
+			int imageSize) {
+		PackedBitmap bitmap = new PackedBitmap(imageSize, imageSize);
+		for (ArrayList<Integer> current : transitionAddresses) {
+			int[] block = findBlock(current, imageSize);
+			bitmap.fillBlack(block[0], block[1], block[2], block[2]);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Draws the accepted words of an automaton into a packed 1-bit image as
+	 * they are enumerated, without keeping them in memory.
+	 *
+	 * @param automaton the automaton, whose start state is 0
+	 * @return the image, whose size is given by the longest word
+	 * @throws IllegalArgumentException if the automaton is a kd-tree automaton
+	 */
+	static PackedBitmap toBitmap(Automaton automaton) {
+		if (automaton.isKdTree()) {
+			throw new IllegalArgumentException("Not a quadtree automaton");
+		}
+		int imageSize = 1 << longestWordLength(automaton);
+		PackedBitmap bitmap = new PackedBitmap(imageSize, imageSize);
+		for (int[] word : new AcceptedWords(automaton)) {
+			int[] block = findBlock(word, imageSize);
+			bitmap.fillBlack(block[0], block[1], block[2], block[2]);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Finds the length of the longest accepted word. For acyclic automata,
+	 * whose paths never repeat a state, this is the longest path from the
+	 * start state to an accept state, found in one pass over the states in
+	 * reverse topological order. Cyclic automata fall back to enumerating
+	 * their words.
+	 *
+	 * @param automaton the automaton, whose start state is 0
+	 * @return the length of the longest accepted word, or 0 if there is none
+	 */
+	private static int longestWordLength(Automaton automaton) {
+		int[] order = automaton.reverseTopologicalOrder();
+		if (order == null) {
+			return new AcceptedWords(automaton).stream().mapToInt(word -> word.length).max()
+					.orElse(0);
+		}
+
+		// The longest path from each state to an accept state, or -1 if none
+		int[] longest = new int[automaton.getNumberOfStates()];
+		for (int state : order) {
+			longest[state] = automaton.isAcceptState(state) ? 0 : -1;
+			for (int i = automaton.getTransitionStart(state); i < automaton
+					.getTransitionEnd(state); i++) {
+				int target = automaton.getTransitionTarget(i);
+				if (longest[target] >= 0) {
+					longest[state] = Math.max(longest[state], longest[target] + 1);
+				}
+			}
+		}
+		return Math.max(longest[0], 0);
+	}
+
+	/**
+	 * Calculates the size of the image from its longest transition address.
+	 *
+	 * @param transitionAddresses a 2D ArrayList of Integers representing the
+	 * transition addresses
+	 * @return the side of the image, 2 to the power of the longest length
+	 */
+	private static int imageSizeOf(ArrayList<ArrayList<Integer>> transitionAddresses) {
+		int maxElements = 0;
+
+		// Find the size of the largest row
+		for (ArrayList<Integer> currentList : transitionAddresses) {
+			maxElements = Math.max(maxElements, currentList.size());
+		}
+		return 1 << maxElements;
+	}
+
+	/**
+	 * Calculates the block a transition address stands for.
+	 *
+	 * @param current the transition address
+	 * @param imageSize the size of the image
+	 * @return an int[] holding the x-coordinate, y-coordinate and size of the
+	 * block
+	 */
+	private static int[] findBlock(ArrayList<Integer> current, int imageSize) {
+		return findBlock(current.stream().mapToInt(Integer::intValue).toArray(), imageSize);
+	}
+
+	/**
+	 * Calculates the block a transition address stands for.
+	 *
+	 * @param current the transition address, as an array of symbols
+	 * @param imageSize the size of the image
+	 * @return an int[] holding the x-coordinate, y-coordinate and size of the
+	 * block
+	 */
+	static int[] findBlock(int[] current, int imageSize) {
+		int x = 0;
+		int y = 0;
+		int blockScale = imageSize;
+		for (int address : current) {
+			blockScale = blockScale / 2;
+
+			// Calculate the position of the current block based on the
+			// current address
+			switch (address) {
+			case 0:
+				y = y + blockScale;
+				break;
+
+			case 1:
+				break;
+
+			case 2:
+				y = y + blockScale;
+				x = x + blockScale;
+				break;
+
+			case 3:
+				x = x + blockScale;
+				break;
+			}
+		}
+		return new int[] { x, y, blockScale };
+	}
+
 	/**
 	 * Displays the generated image in a GUI using a JFrame. The JFrame is
 	 * titled "Decompressed Image" and will close when the user exits the
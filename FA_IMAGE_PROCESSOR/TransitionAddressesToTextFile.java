@@ -1,12 +1,10 @@
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.*;
 
 /**
  * This class is responsible for generating a transition map based on given
- * transition addresses and writing it to a text file. The transition map is
- * represented as a Map<Integer, Map<Integer, Integer>>.
+ * transition addresses and turning it into an Automaton, which can be written
+ * to a text file. The transition map is represented as a
+ * Map<Integer, Map<Integer, Integer>>.
  */
 public class TransitionAddressesToTextFile {
 	private final Map<Integer, Map<Integer, Integer>> mapOfTextFile = new HashMap<>();
@@ -16,16 +14,12 @@ public class TransitionAddressesToTextFile {
 	private int totalStates;
 
 	/**
-	 * Constructs an instance of TransitionAddressesToTextFile and initializes
-	 * the required fields. Builds the transition map and writes it to a text
-	 * file using the specified input file path.
+	 * Constructs an instance of TransitionAddressesToTextFile and builds the
+	 * transition map of the given transition addresses.
 	 *
 	 * @param inputs The list of transition addresses.
-	 * @param inputFilePath The path to the input file.
-	 * @param args Command line arguments.
 	 */
-	public TransitionAddressesToTextFile(ArrayList<ArrayList<Integer>> inputs, String inputFilePath,
-			String[] args) {
+	public TransitionAddressesToTextFile(ArrayList<ArrayList<Integer>> inputs) {
 		this.language = new ArrayList<>();
 		totalStates = 0;
 		currentProcessingState = 0;
@@ -34,13 +28,6 @@ public class TransitionAddressesToTextFile {
 		// Convert input transition addresses to language sets
 		language.add(new HashSet<>(convertLanguageToIntegers(inputs)));
 		buildTransitionMap();
-
-		// Write the transition map to a text file
-		if (args.length == 5) {
-			writeToTextFile(inputFilePath, Integer.parseInt(args[3]));
-		} else {
-			writeToTextFile(inputFilePath, -1);
-		}
 	}
 
 	/**
@@ -142,82 +129,69 @@ public class TransitionAddressesToTextFile {
 	}
 
 	/**
-	 * Writes the transition map to a text file using the specified input file
-	 * path and method.
+	 * Returns the transition map as an Automaton, adding the transitions of
+	 * the given multi-resolution method.
 	 *
-	 * @param inputFilePath The path to the input file.
-	 * @param method The method used for generating the transition map.
+	 * @param method The multi-resolution method, or 0 for a plain automaton.
+	 * @param inclusiveQuads The quadrants looped on by accept states with
+	 * method 1, as found by ImageToTransitionAddresses.
+	 * @return The automaton.
 	 */
-	private void writeToTextFile(String inputFilePath, int method) {
-		ArrayList<Integer> acceptStates = new ArrayList<>();
-
-		if (method == 3) {
-			for (int k = 0; k <= totalStates; k++) {
-				acceptStates.add(k);
-			}
-		} else {
-			for (int k : mapOfTextFile.keySet()) {
-				if (mapOfTextFile.get(k).isEmpty()) {
-					acceptStates.add(k);
-				}
+	public Automaton toAutomaton(int method, int[] inclusiveQuads) {
+		int numberOfStates = totalStates + 1;
+		boolean[] acceptStates = new boolean[numberOfStates];
+		int acceptCount = 0;
+		int transitionCount = 0;
+
+		// A state accepts when its language holds the empty word, or with
+		// method 3 any word at all, so an entirely white image, whose
+		// language is empty, has no accept states
+		for (int k = 0; k < numberOfStates; k++) {
+			if (method == 3 ? !language.get(k).isEmpty() : language.get(k).contains("")) {
+				acceptStates[k] = true;
+				acceptCount++;
 			}
+			transitionCount += mapOfTextFile.get(k).size();
+		}
+		if (method == 1) {
+			transitionCount += 3 * acceptCount;
+		} else if (method == 2) {
+			transitionCount += 4;
 		}
 
-		try {
-			if (inputFilePath.contains("/")) {
-				inputFilePath = inputFilePath.substring(inputFilePath.lastIndexOf("/"));
-			}
-
-			BufferedWriter writer = new BufferedWriter(
-					new FileWriter("out/" + inputFilePath.replace(".png", "_cmp.txt")));
-
-			writer.write(Integer.toString(totalStates + 1));
-			writer.newLine();
-
-			Iterator<Integer> acceptStatesIterator = acceptStates.iterator();
-			while (acceptStatesIterator.hasNext()) {
-				writer.write(Integer.toString(acceptStatesIterator.next()));
-				if (acceptStatesIterator.hasNext()) {
-					writer.write(" ");
-				}
-			}
-			writer.newLine();
+		int[] fromStates = new int[transitionCount];
+		int[] toStates = new int[transitionCount];
+		int[] symbols = new int[transitionCount];
+		int count = 0;
 
-			if (method == 2) {
-				for (int k = 0; k < 4; k++) {
-					writer.write("0 0 " + k);
-					writer.newLine();
-				}
+		if (method == 2) {
+			for (int k = 0; k < 4; k++) {
+				symbols[count++] = k;
 			}
+		}
 
-			for (Map.Entry<Integer, Map<Integer, Integer>> fromStateEntry : mapOfTextFile
+		for (Map.Entry<Integer, Map<Integer, Integer>> fromStateEntry : mapOfTextFile
+				.entrySet()) {
+			for (Map.Entry<Integer, Integer> toStateEntry : fromStateEntry.getValue()
 					.entrySet()) {
-				int fromState = fromStateEntry.getKey();
-				Map<Integer, Integer> toStatesMap = fromStateEntry.getValue();
-
-				for (Map.Entry<Integer, Integer> toStateEntry : toStatesMap.entrySet()) {
-					int transition = toStateEntry.getKey();
-					int toState = toStateEntry.getValue();
-
-					writer.write(fromState + " " + toState + " " + transition);
-					writer.newLine();
-				}
+				fromStates[count] = fromStateEntry.getKey();
+				toStates[count] = toStateEntry.getValue();
+				symbols[count++] = toStateEntry.getKey();
 			}
+		}
 
-			if (method == 1) {
-				int[] inclusiveQuads = ImageToTransitionAddresses.getinclusiveQuads();
-
-				for (int k : acceptStates) {
+		if (method == 1) {
+			for (int k = 0; k < numberOfStates; k++) {
+				if (acceptStates[k]) {
 					for (int i = 0; i < 3; i++) {
-						writer.write(k + " " + k + " " + inclusiveQuads[i]);
-						writer.newLine();
+						fromStates[count] = k;
+						toStates[count] = k;
+						symbols[count++] = inclusiveQuads[i];
 					}
 				}
 			}
-
-			writer.close();
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
+		return new Automaton(numberOfStates, acceptStates, fromStates, toStates, symbols,
+				count);
 	}
 }
\ No newline at end of file
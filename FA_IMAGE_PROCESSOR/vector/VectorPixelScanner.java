@@ -0,0 +1,70 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class is a PixelScanner that classifies whole vectors of pixels at
+ * once with the jdk.incubator.vector API. Each vector compare yields a lane
+ * mask whose bits are the packed pixels, so packing costs a bit reversal per
+ * byte instead of a branch per pixel.
+ *
+ * The class needs --add-modules jdk.incubator.vector both to compile and to
+ * run, so it lives in this separate source root and is compiled on top of the
+ * main classes only when the module is wanted. PixelScanner.getInstance loads
+ * it reflectively and falls back to the scalar scanner when it is unavailable.
+ */
+final class VectorPixelScanner extends PixelScanner {
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+	private static final int WHITE = 0xFFFFFF;
+
+	/**
+	 * Constructs a VectorPixelScanner.
+	 */
+	VectorPixelScanner() {
+	}
+
+	/**
+	 * Packs a range of one row, a vector at a time while the range is byte
+	 * aligned and the rest one pixel at a time.
+	 *
+	 * @param pixels The ARGB pixels.
+	 * @param rowOffset The index of the row's first pixel in pixels.
+	 * @param from The first x-coordinate of the range.
+	 * @param to The x-coordinate one past the end of the range.
+	 * @param packed The packed rows, which are initially white.
+	 * @param packedOffset The index of the row's first byte in packed.
+	 * @return The number of pixels in the range that are neither black nor
+	 * white.
+	 */
+	@Override
+	int packRange(int[] pixels, int rowOffset, int from, int to, byte[] packed,
+			int packedOffset) {
+		int lanes = SPECIES.length();
+		int impure = 0;
+		int x = from;
+
+		// Lanes must fill whole bytes for the masks to be stored directly
+		if (lanes >= 8 && (from & 7) == 0) {
+			int bound = from + SPECIES.loopBound(to - from);
+			for (; x < bound; x += lanes) {
+				IntVector color = IntVector.fromArray(SPECIES, pixels, rowOffset + x)
+						.lanewise(VectorOperators.AND, WHITE);
+				VectorMask<Integer> white = color.compare(VectorOperators.EQ, WHITE);
+				VectorMask<Integer> pureBlack = color.compare(VectorOperators.EQ, 0);
+				VectorMask<Integer> blackPixels = white.not();
+				impure += white.or(pureBlack).not().trueCount();
+
+				// Lane 0 is the least significant mask bit but the most
+				// significant bit of its byte
+				long bits = blackPixels.toLong();
+				int index = packedOffset + (x >> 3);
+				for (int b = 0; b < lanes; b += 8, bits >>>= 8) {
+					packed[index++] = (byte) (Integer.reverse((int) bits & 0xFF) >>> 24);
+				}
+			}
+		}
+
+		return impure + super.packRange(pixels, rowOffset, x, to, packed, packedOffset);
+	}
+}
\ No newline at end of file